@@ -0,0 +1,3 @@
+#!/bin/sh
+
+java -Xss256m -cp ./bin fillin/main/BatchSolver "$@"
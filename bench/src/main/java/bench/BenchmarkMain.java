@@ -0,0 +1,25 @@
+package bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the usual JMH command line, adding the
+ * GC profiler so that every result comes with its allocation rate
+ * ({@code gc.alloc.rate.norm} is the bytes allocated per operation).
+ */
+public class BenchmarkMain {
+	public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+		CommandLineOptions cmd = new CommandLineOptions(args);
+		Options options = new OptionsBuilder()
+				.parent(cmd)
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,89 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fillin.main.Decomposer.TBlock;
+import tw.common.BlockSieve;
+import tw.common.XBitSet;
+
+/**
+ * Insertion into and superset queries on the {@link BlockSieve} that
+ * holds the TBlocks of the Decomposer. The stored values are irrelevant
+ * to the trie, so {@code null} values are used.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlockSieveBenchmark {
+	@Param({"100", "500", "2000"})
+	int n;
+
+	/**
+	 * the number of sets stored in the sieve
+	 */
+	@Param({"1000", "10000"})
+	int size;
+
+	XBitSet[] sets;
+	XBitSet[] queries;
+	XBitSet[] neighbors;
+	BlockSieve sieve;
+	List<TBlock> list;
+	int next;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(RandomGraphs.SEED);
+		sets = new XBitSet[size];
+		for (int i = 0; i < size; i++) {
+			sets[i] = RandomGraphs.set(n, 0.3, random);
+		}
+		sieve = new BlockSieve(n);
+		for (XBitSet s: sets) {
+			sieve.put(s, null);
+		}
+		queries = new XBitSet[256];
+		neighbors = new XBitSet[256];
+		for (int i = 0; i < queries.length; i++) {
+			queries[i] = sets[random.nextInt(size)].intersectWith(RandomGraphs.set(n, 0.2, random));
+			neighbors[i] = RandomGraphs.set(n, 0.05, random);
+			neighbors[i].andNot(queries[i]);
+		}
+		list = new ArrayList<>();
+	}
+
+	@Benchmark
+	public BlockSieve put() {
+		BlockSieve s = new BlockSieve(n);
+		for (XBitSet bs: sets) {
+			s.put(bs, null);
+		}
+		return s;
+	}
+
+	@Benchmark
+	public int collectSuperblocks() {
+		int i = next++ & (queries.length - 1);
+		list.clear();
+		sieve.collectSuperblocks(queries[i], neighbors[i], list);
+		return list.size();
+	}
+}
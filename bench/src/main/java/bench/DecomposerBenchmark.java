@@ -0,0 +1,67 @@
+package bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fillin.main.Decomposer;
+import tw.common.LabeledGraph;
+import tw.common.XBitSet;
+
+/**
+ * The PMC test of the Decomposer on the candidates it starts from,
+ * the closed neighborhoods of the vertices. {@code isPMC} runs the test
+ * on a fresh Decomposer, including the construction of the blocks;
+ * {@code isPMCCached} repeats it on a Decomposer that has seen the
+ * candidates, as happens across the iterations of {@code decompose}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecomposerBenchmark {
+	@Param({"100", "500", "2000"})
+	int n;
+
+	@Param({"2", "4"})
+	int degree;
+
+	LabeledGraph g;
+	Decomposer decomposer;
+	XBitSet[] candidates;
+	int next;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(RandomGraphs.SEED);
+		g = RandomGraphs.graph(n, degree, random);
+		decomposer = new Decomposer(g);
+		candidates = new XBitSet[256];
+		for (int i = 0; i < candidates.length; i++) {
+			candidates[i] = g.closedNeighborSet(random.nextInt(n));
+		}
+	}
+
+	@Benchmark
+	public boolean isPMC() {
+		return new Decomposer(g).isPMC(candidates[next++ & (candidates.length - 1)]);
+	}
+
+	@Benchmark
+	public boolean isPMCCached() {
+		return decomposer.isPMC(candidates[next++ & (candidates.length - 1)]);
+	}
+}
@@ -0,0 +1,76 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tw.common.LabeledGraph;
+import tw.common.XBitSet;
+
+/**
+ * Graph primitives called in the inner loops of the solver:
+ * components after removing a separator, fill counting, the chordality
+ * test and the decomposition by clique separators.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GraphBenchmark {
+	@Param({"100", "500", "2000"})
+	int n;
+
+	/**
+	 * the number of random edges drawn from each vertex
+	 */
+	@Param({"2", "4"})
+	int degree;
+
+	LabeledGraph g;
+	XBitSet separator;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(RandomGraphs.SEED);
+		g = RandomGraphs.graph(n, degree, random);
+		// a closed neighborhood, as for the PMC candidates of the Decomposer
+		separator = g.closedNeighborSet(random.nextInt(n));
+		for (int i = 0; i < 3; i++) {
+			separator.or(g.closedNeighborSet(random.nextInt(n)));
+		}
+	}
+
+	@Benchmark
+	public ArrayList<XBitSet> getComponents() {
+		return g.getComponents(separator);
+	}
+
+	@Benchmark
+	public int countFill() {
+		return g.countFill(separator);
+	}
+
+	@Benchmark
+	public boolean isChordal() {
+		return g.isChordal();
+	}
+
+	@Benchmark
+	public ArrayList<XBitSet> decomposeByCliqueSeparators() {
+		return g.decomposeByCliqueSeparators();
+	}
+}
@@ -0,0 +1,85 @@
+package bench;
+
+import java.util.Random;
+
+import tw.common.LabeledGraph;
+import tw.common.XBitSet;
+
+/**
+ * Seeded random inputs shared by the benchmarks, so that every run
+ * measures the same graphs and vertex sets.
+ */
+final class RandomGraphs {
+	static final long SEED = 20170601L;
+
+	private RandomGraphs() {
+	}
+
+	/**
+	 * A graph on {@code n} vertices where each vertex is joined to
+	 * {@code degree} random others, built as the solver builds its input.
+	 */
+	static LabeledGraph graph(int n, int degree, Random random) {
+		String[] labels = new String[n];
+		for (int v = 0; v < n; v++) {
+			labels[v] = Integer.toString(v);
+		}
+		int m = n * degree;
+		int[] edges = new int[2 * m];
+		for (int i = 0; i < m; i++) {
+			edges[2 * i] = i / degree;
+			edges[2 * i + 1] = random.nextInt(n);
+		}
+		LabeledGraph g = new LabeledGraph(labels);
+		g.setEdges(edges, m);
+		return g;
+	}
+
+	/**
+	 * A graph whose vertices lie on a line, each joined to {@code degree}
+	 * random vertices among the next {@code width}, numbered in a random
+	 * order: its locality is hidden by the numbering, as it is in an input
+	 * whose labels do not follow the structure of the graph.
+	 */
+	static LabeledGraph bandGraph(int n, int degree, int width, Random random) {
+		int[] perm = new int[n];
+		for (int v = 0; v < n; v++) {
+			perm[v] = v;
+		}
+		for (int v = n - 1; v > 0; v--) {
+			int w = random.nextInt(v + 1);
+			int t = perm[v];
+			perm[v] = perm[w];
+			perm[w] = t;
+		}
+		String[] labels = new String[n];
+		for (int v = 0; v < n; v++) {
+			labels[v] = Integer.toString(v);
+		}
+		int m = 0;
+		int[] edges = new int[2 * n * degree];
+		for (int v = 0; v < n - 1; v++) {
+			for (int i = 0; i < degree; i++) {
+				int w = Math.min(n - 1, v + 1 + random.nextInt(width));
+				edges[m++] = perm[v];
+				edges[m++] = perm[w];
+			}
+		}
+		LabeledGraph g = new LabeledGraph(labels);
+		g.setEdges(edges, m / 2);
+		return g;
+	}
+
+	/**
+	 * A subset of {0, ..., n - 1} containing each element with the given probability.
+	 */
+	static XBitSet set(int n, double density, Random random) {
+		XBitSet s = new XBitSet(n);
+		for (int v = 0; v < n; v++) {
+			if (random.nextDouble() < density) {
+				s.set(v);
+			}
+		}
+		return s;
+	}
+}
@@ -0,0 +1,106 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fillin.main.Decomposer;
+import fillin.main.Decomposer.TBlock;
+import fillin.main.VertexOrder;
+import tw.common.BlockSieve;
+import tw.common.LabeledGraph;
+import tw.common.XBitSet;
+
+/**
+ * The PMC test and the sieve queries of the Decomposer on a graph with
+ * hidden locality, in the order of its labels ({@code none}) and
+ * renumbered by {@link VertexOrder}. The same closed neighborhoods are
+ * tested in every order. The sieve holds the components of the graph
+ * minus each of them, and is queried with a component and its
+ * neighborhood, as an MBlock queries it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VertexOrderBenchmark {
+	@Param({"100", "500", "2000"})
+	int n;
+
+	@Param({"none", "BFS", "RCM"})
+	String order;
+
+	LabeledGraph g;
+	XBitSet[] candidates;
+	BlockSieve sieve;
+	XBitSet[] queries;
+	XBitSet[] neighbors;
+	List<TBlock> list;
+	int next;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(RandomGraphs.SEED);
+		LabeledGraph original = RandomGraphs.bandGraph(n, 2, 8, random);
+		int[] position = new int[n];
+		if (order.equals("none")) {
+			g = original;
+			for (int v = 0; v < n; v++) {
+				position[v] = v;
+			}
+		} else {
+			int[] o = VertexOrder.valueOf(order).order(original);
+			g = VertexOrder.renumber(original, o);
+			for (int i = 0; i < n; i++) {
+				position[o[i]] = i;
+			}
+		}
+		candidates = new XBitSet[256];
+		for (int i = 0; i < candidates.length; i++) {
+			candidates[i] = g.closedNeighborSet(position[random.nextInt(n)]);
+		}
+		sieve = new BlockSieve(n);
+		ArrayList<XBitSet> components = new ArrayList<>();
+		for (XBitSet separator: candidates) {
+			for (XBitSet c: g.getComponents(separator)) {
+				sieve.put(c, null);
+				components.add(c);
+			}
+		}
+		queries = new XBitSet[256];
+		neighbors = new XBitSet[256];
+		for (int i = 0; i < queries.length; i++) {
+			queries[i] = components.get(random.nextInt(components.size()));
+			neighbors[i] = g.neighborSet(queries[i]);
+		}
+		list = new ArrayList<>();
+	}
+
+	@Benchmark
+	public boolean isPMC() {
+		return new Decomposer(g).isPMC(candidates[next++ & (candidates.length - 1)]);
+	}
+
+	@Benchmark
+	public int collectSuperblocks() {
+		int i = next++ & (queries.length - 1);
+		list.clear();
+		sieve.collectSuperblocks(queries[i], neighbors[i], list);
+		return list.size();
+	}
+}
@@ -0,0 +1,113 @@
+package bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tw.common.XBitSet;
+
+/**
+ * The set algebra of {@link XBitSet}, in its allocating, in-place and
+ * query forms, on random sets over {@code n} elements.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XBitSetBenchmark {
+	@Param({"64", "512", "4096"})
+	int n;
+
+	XBitSet a;
+	XBitSet b;
+	XBitSet small;
+	XBitSet target;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(RandomGraphs.SEED);
+		a = RandomGraphs.set(n, 0.5, random);
+		b = RandomGraphs.set(n, 0.5, random);
+		small = a.intersectWith(RandomGraphs.set(n, 0.1, random));
+		target = new XBitSet(n);
+	}
+
+	@Benchmark
+	public XBitSet unionWith() {
+		return a.unionWith(b);
+	}
+
+	@Benchmark
+	public XBitSet intersectWith() {
+		return a.intersectWith(b);
+	}
+
+	@Benchmark
+	public XBitSet subtract() {
+		return a.subtract(b);
+	}
+
+	@Benchmark
+	public XBitSet setUnion() {
+		target.setUnion(a, b);
+		return target;
+	}
+
+	@Benchmark
+	public XBitSet setDifference() {
+		target.setDifference(a, b);
+		return target;
+	}
+
+	@Benchmark
+	public boolean isSubset() {
+		return small.isSubset(a);
+	}
+
+	@Benchmark
+	public boolean intersects() {
+		return small.intersects(b);
+	}
+
+	@Benchmark
+	public int intersectionCardinality() {
+		return a.intersectionCardinality(b);
+	}
+
+	@Benchmark
+	public int cardinality() {
+		return a.cardinality();
+	}
+
+	@Benchmark
+	public int iterate() {
+		int sum = 0;
+		for (int v = a.nextSetBit(0); v >= 0; v = a.nextSetBit(v + 1)) {
+			sum += v;
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public int hashCodeOf() {
+		return a.hashCode();
+	}
+
+	@Benchmark
+	public int compareTo() {
+		return a.compareTo(b);
+	}
+}
@@ -0,0 +1,83 @@
+package bench;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tw.common.XBitSet;
+import tw.common.XBitSetMap;
+
+/**
+ * Lookups and insertions in the maps keyed by vertex sets that the
+ * Decomposer keeps, comparing {@link XBitSetMap} with {@code HashMap}.
+ * Half of the lookups miss; the keys looked up are copies of the
+ * stored ones, so a hit compares the words.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XBitSetMapBenchmark {
+	@Param({"64", "200", "1000"})
+	int n;
+
+	@Param({"10000", "100000"})
+	int size;
+
+	@Param({"hash", "fingerprint"})
+	String map;
+
+	XBitSet[] keys;
+	XBitSet[] probes;
+	Map<XBitSet, Integer> filled;
+	int next;
+
+	Map<XBitSet, Integer> newMap() {
+		return map.equals("hash") ? new HashMap<>() : new XBitSetMap<>();
+	}
+
+	@Setup
+	public void setup() {
+		Random random = new Random(RandomGraphs.SEED);
+		keys = new XBitSet[size];
+		filled = newMap();
+		for (int i = 0; i < size; i++) {
+			// small sets, like the separators and components of a sparse graph
+			keys[i] = RandomGraphs.set(n, 8.0 / n, random);
+			filled.put(keys[i], i);
+		}
+		probes = new XBitSet[1 << 12];
+		for (int i = 0; i < probes.length; i++) {
+			probes[i] = i % 2 == 0 ? keys[random.nextInt(size)].clone() : RandomGraphs.set(n, 8.0 / n, random);
+		}
+	}
+
+	@Benchmark
+	public Integer get() {
+		return filled.get(probes[next++ & (probes.length - 1)]);
+	}
+
+	@Benchmark
+	public Map<XBitSet, Integer> fill() {
+		Map<XBitSet, Integer> m = newMap();
+		for (int i = 0; i < keys.length; i++) {
+			m.putIfAbsent(keys[i], i);
+		}
+		return m;
+	}
+}
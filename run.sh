@@ -1,3 +1,3 @@
 #!/bin/sh
 
-java -Xss256m -cp ./bin fillin/main/Solver
+java -Xss256m -cp ./bin fillin/main/Solver "$@"
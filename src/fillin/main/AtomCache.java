@@ -0,0 +1,352 @@
+package fillin.main;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of optimal fill-ins of atoms, keyed by {@link CanonicalForm#key}.
+ * Fill edges are stored as pairs of canonical vertex numbers.
+ * <p>
+ * An atom being solved is kept in memory until it is done, so that the
+ * callers that ask for the same atom meanwhile wait for its fill-in instead
+ * of solving it again. If a file is given, fill-ins are then appended to a
+ * memory-mapped ring log in that file and dropped from memory, and repeats
+ * in this run and later ones are read back from the log, so that memory
+ * use stays bounded by the atoms in progress. When the log is full the
+ * oldest entries are evicted. Without a file, fill-ins are kept in memory
+ * for the duration of the run. The file must not be shared by concurrent
+ * processes.
+ * <p>
+ * File layout: a header of {@code HEADER_SIZE} bytes holding the magic
+ * number, the head (next write position), the tail (oldest record) and
+ * a flag telling whether the log has wrapped around, followed by the
+ * records. A record is its length in bytes, the 64-bit hash of the key,
+ * the key length and bytes, the number of fill edges and their pairs.
+ * A length of {@code WRAP} marks the end of the records before the
+ * log continues at the start.
+ * <p>
+ * A record is written only into space outside the records the header
+ * points to: the header is first moved past the evicted records and
+ * forced to the file, then the record is written, its length word last,
+ * and the header moved over it and forced again. A run killed at any
+ * point thus leaves a log whose header points to whole records.
+ */
+public class AtomCache {
+	private static final int MAGIC = 0x46494c4c;
+	private static final int HEADER_SIZE = 32;
+	private static final int WRAP = -1;
+	private static final int HEAD = 8;
+	private static final int TAIL = 16;
+	private static final int WRAPPED = 24;
+
+	/**
+	 * the size of a record without key and pairs
+	 */
+	private static final int RECORD_SIZE = 20;
+
+	/**
+	 * the atoms being solved, and in a cache without a file, those solved
+	 */
+	private final ConcurrentHashMap< Key, CompletableFuture< int[] > > entries;
+
+	private MappedByteBuffer log;
+	private RandomAccessFile raf;
+	private int capacity;
+	private int head;
+	private int tail;
+	private boolean wrapped;
+
+	/**
+	 * record offsets in the log, by key hash
+	 */
+	private HashMap< Long, Integer > index;
+
+	private int hits;
+	private int misses;
+
+	/**
+	 * Creates a cache that lives only for this run.
+	 */
+	public AtomCache() {
+		entries = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Creates a cache backed by the given file. If the file holds a log
+	 * written earlier its entries are made available; if it is new or
+	 * empty a new log of the given size is created. Any other file is
+	 * left untouched. A log found damaged, e.g. by a run killed while
+	 * writing it, is emptied.
+	 * @param file the log file
+	 * @param capacity the size of a new log in bytes
+	 * @throws IOException if the file is not empty and holds no log
+	 */
+	public AtomCache(File file, int capacity) throws IOException {
+		this();
+		raf = new RandomAccessFile(file, "rw");
+		boolean existing = raf.length() > 0;
+		if (existing && (raf.length() < HEADER_SIZE || raf.readInt() != MAGIC)) {
+			raf.close();
+			throw new IOException("Not an atom cache file: " + file);
+		}
+		if (existing) {
+			capacity = (int) Math.min(raf.length(), Integer.MAX_VALUE);
+		}
+		this.capacity = capacity;
+		log = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+		index = new HashMap<>();
+		if (existing) {
+			head = (int) log.getLong(HEAD);
+			tail = (int) log.getLong(TAIL);
+			wrapped = log.getInt(WRAPPED) != 0;
+			if (!scan()) {
+				System.err.println("c atom cache damaged, emptied: " + file);
+				index.clear();
+				reset();
+			}
+		} else {
+			log.putInt(0, MAGIC);
+			reset();
+		}
+	}
+
+	private void reset() {
+		head = tail = HEADER_SIZE;
+		wrapped = false;
+		writeHeader();
+		log.force();
+	}
+
+	/**
+	 * Indexes the records of the log, checking each against the bounds
+	 * of the log and its own length.
+	 * @return false if the log is damaged
+	 */
+	private boolean scan() {
+		if (head < HEADER_SIZE || head > capacity || tail < HEADER_SIZE || tail > capacity ||
+				(wrapped ? head > tail : tail > head)) {
+			return false;
+		}
+		int pos = tail;
+		boolean wrap = wrapped;
+		while (wrap || pos < head) {
+			if (pos + 4 > capacity) {
+				return false;
+			}
+			int length = log.getInt(pos);
+			if (wrap && length == WRAP) {
+				pos = HEADER_SIZE;
+				wrap = false;
+				continue;
+			}
+			int end = wrap ? capacity : head;
+			if (length < RECORD_SIZE || length > end - pos) {
+				return false;
+			}
+			int keyLength = log.getInt(pos + 12);
+			if (keyLength < 0 || keyLength > length - RECORD_SIZE) {
+				return false;
+			}
+			int nPairs = log.getInt(pos + 16 + keyLength);
+			if (nPairs < 0 || nPairs > (length - RECORD_SIZE - keyLength) / 8 ||
+					length != RECORD_SIZE + keyLength + 8 * nPairs) {
+				return false;
+			}
+			index.put(log.getLong(pos + 4), pos);
+			pos += length;
+		}
+		return pos == head;
+	}
+
+	/**
+	 * Looks up the fill-in of the atom with the given key, or reserves the
+	 * key for the caller if it is absent. In the latter case the caller must
+	 * solve the atom and call {@link #complete}.
+	 * @return the future of the fill-in as canonical pairs, completed or being
+	 * computed by another caller; {@code null} if the key has been reserved
+	 * for the caller
+	 */
+	public CompletableFuture< int[] > lookupOrReserve(byte[] key) {
+		Key k = new Key(key);
+		CompletableFuture< int[] > reserved = new CompletableFuture<>();
+		CompletableFuture< int[] > existing = entries.putIfAbsent(k, reserved);
+		if (existing != null) {
+			synchronized (this) {
+				hits++;
+			}
+			return existing;
+		}
+		int[] stored = read(k);
+		if (stored != null) {
+			reserved.complete(stored);
+			entries.remove(k, reserved);
+			return reserved;
+		}
+		return null;
+	}
+
+	/**
+	 * Completes a reservation made by {@link #lookupOrReserve}.
+	 * @param key the key reserved
+	 * @param pairs the optimal fill-in as canonical pairs; {@code null} if the
+	 * atom could not be solved to optimality, in which case the key is released
+	 */
+	public void complete(byte[] key, int[] pairs) {
+		Key k = new Key(key);
+		CompletableFuture< int[] > reserved = entries.get(k);
+		// the callers waiting hold the future; later ones find the log
+		if (pairs == null) {
+			entries.remove(k);
+		} else if (log != null) {
+			write(k, pairs);
+			entries.remove(k);
+		}
+		reserved.complete(pairs);
+	}
+
+	private synchronized int[] read(Key k) {
+		if (log != null) {
+			Integer pos = index.get(k.hash);
+			if (pos != null && matches(pos, k.bytes)) {
+				int p = pos + 16 + k.bytes.length;
+				int[] pairs = new int[2 * log.getInt(p)];
+				for (int i = 0; i < pairs.length; i++) {
+					pairs[i] = log.getInt(p + 4 + 4 * i);
+				}
+				hits++;
+				return pairs;
+			}
+		}
+		misses++;
+		return null;
+	}
+
+	private boolean matches(int pos, byte[] key) {
+		if (log.getInt(pos + 12) != key.length) {
+			return false;
+		}
+		for (int i = 0; i < key.length; i++) {
+			if (log.get(pos + 16 + i) != key[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private synchronized void write(Key k, int[] pairs) {
+		if (log == null) {
+			return;
+		}
+		int length = RECORD_SIZE + k.bytes.length + 4 * pairs.length;
+		if (length + 4 > capacity - HEADER_SIZE) {
+			return;
+		}
+		while (true) {
+			if (!wrapped) {
+				if (head + length + 4 <= capacity) {
+					break;
+				}
+				log.putInt(head, WRAP);
+				head = HEADER_SIZE;
+				wrapped = true;
+			} else {
+				if (head + length <= tail) {
+					break;
+				}
+				evict();
+			}
+		}
+		// the space to be overwritten is given up before it is
+		writeHeader();
+		log.force();
+
+		int pos = head;
+		log.putLong(pos + 4, k.hash);
+		log.putInt(pos + 12, k.bytes.length);
+		for (int i = 0; i < k.bytes.length; i++) {
+			log.put(pos + 16 + i, k.bytes[i]);
+		}
+		int p = pos + 16 + k.bytes.length;
+		log.putInt(p, pairs.length / 2);
+		for (int i = 0; i < pairs.length; i++) {
+			log.putInt(p + 4 + 4 * i, pairs[i]);
+		}
+		log.putInt(pos, length);
+		head += length;
+		index.put(k.hash, pos);
+		writeHeader();
+		log.force();
+	}
+
+	/**
+	 * Removes the oldest record from the log.
+	 */
+	private void evict() {
+		int length = log.getInt(tail);
+		if (length == WRAP) {
+			tail = HEADER_SIZE;
+			wrapped = false;
+			return;
+		}
+		Long hash = log.getLong(tail + 4);
+		Integer pos = index.get(hash);
+		if (pos != null && pos == tail) {
+			index.remove(hash);
+		}
+		tail += length;
+	}
+
+	private void writeHeader() {
+		log.putLong(HEAD, head);
+		log.putLong(TAIL, tail);
+		log.putInt(WRAPPED, wrapped ? 1 : 0);
+	}
+
+	public synchronized int getHits() {
+		return hits;
+	}
+
+	public synchronized int getMisses() {
+		return misses;
+	}
+
+	public synchronized void close() throws IOException {
+		if (log != null) {
+			log.force();
+			log = null;
+			raf.close();
+		}
+	}
+
+	private static class Key {
+		final byte[] bytes;
+		final long hash;
+
+		Key(byte[] bytes) {
+			this.bytes = bytes;
+			long h = 0xcbf29ce484222325L;
+			for (byte b: bytes) {
+				h ^= b & 0xff;
+				h *= 0x100000001b3L;
+			}
+			this.hash = h;
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) (hash ^ (hash >>> 32));
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Key && Arrays.equals(bytes, ((Key) obj).bytes);
+		}
+	}
+}
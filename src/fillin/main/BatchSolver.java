@@ -0,0 +1,247 @@
+package fillin.main;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import tw.common.LabeledGraph;
+
+/**
+ * Solves many graphs in one JVM, so that the JIT-compiled code stays warm
+ * across instances. The fill-in of {@code x.graph} is written to {@code x.graph.fill}
+ * in the same directory, and one summary line per instance is printed to
+ * the standard output.
+ */
+public class BatchSolver {
+
+	private static final String OUTPUT_SUFFIX = ".fill";
+	private static final String STATS_SUFFIX = ".stats";
+	private static final long STACK_SIZE = 256L << 20;
+	/**
+	 * seconds a cancelled instance is given to write its fill-in
+	 */
+	private static final long GRACE_SECONDS = 10;
+
+	private final int nWorkers;
+	private final long timeLimit;
+	private AtomCache atomCache;
+	private boolean collectStats;
+
+	/**
+	 * @param nWorkers the number of instances solved at the same time
+	 * @param timeLimit time limit per instance in milliseconds; 0 for no limit
+	 */
+	public BatchSolver(int nWorkers, long timeLimit)
+	{
+		this.nWorkers = nWorkers;
+		this.timeLimit = timeLimit;
+	}
+
+	/**
+	 * Makes all instances share the given cache of atom fill-ins.
+	 */
+	public void setAtomCache(AtomCache atomCache)
+	{
+		this.atomCache = atomCache;
+	}
+
+	/**
+	 * Makes the statistics of each instance {@code x.graph} be written
+	 * as JSON to {@code x.graph.stats}.
+	 */
+	public void setCollectStats(boolean collectStats)
+	{
+		this.collectStats = collectStats;
+	}
+
+	public void solveAll(List< File > files) throws InterruptedException
+	{
+		// the solver recurses deeply on large graphs, as in run.sh
+		ExecutorService workers = Executors.newFixedThreadPool( nWorkers,
+				r -> {
+					Thread t = new Thread( null, r, "batch-worker", STACK_SIZE );
+					t.setDaemon( true );
+					return t;
+				});
+		ExecutorService solvers = Executors.newCachedThreadPool(
+				r -> {
+					Thread t = new Thread( null, r, "batch-solver", STACK_SIZE );
+					t.setDaemon( true );
+					return t;
+				});
+
+		List< Future< String > > results = new ArrayList<>();
+		for (File file: files) {
+			results.add( workers.submit( () -> solveWithLimit( solvers, file ) ) );
+		}
+		for (Future< String > result: results) {
+			try {
+				System.out.println( result.get() );
+			} catch (ExecutionException e) {
+				e.getCause().printStackTrace();
+			}
+		}
+		workers.shutdown();
+		solvers.shutdownNow();
+	}
+
+	/**
+	 * Solves one instance in a separate thread, waiting at most the time limit.
+	 * On timeout the instance is solved in the anytime mode: its exact search
+	 * is cancelled and the best fill-in found so far is written. If that
+	 * does not finish within a grace period either, the instance is given up:
+	 * it is reported as timed out without a fill-in size, and nothing is
+	 * written for it. The worker waits for the solver thread to end all the
+	 * same, so that no more than the given number of instances run at once.
+	 * @return the summary line for the instance
+	 */
+	private String solveWithLimit(ExecutorService solvers, File file) throws InterruptedException
+	{
+		long start = System.currentTimeMillis();
+		CancellationToken cancel = new CancellationToken();
+		// taken by the solver before it writes, or by the worker when it gives up
+		AtomicBoolean decided = new AtomicBoolean();
+		CountDownLatch ended = new CountDownLatch( 1 );
+		Future< Integer > future = solvers.submit( () -> {
+			try {
+				return solve( file, cancel, decided );
+			} finally {
+				ended.countDown();
+			}
+		});
+		boolean timeout = false;
+		try {
+			int opt;
+			try {
+				opt = timeLimit > 0 ? future.get( timeLimit, TimeUnit.MILLISECONDS ) : future.get();
+			} catch (TimeoutException e) {
+				timeout = true;
+				cancel.cancel();
+				try {
+					opt = future.get( GRACE_SECONDS, TimeUnit.SECONDS );
+				} catch (TimeoutException e2) {
+					if (decided.compareAndSet( false, true )) {
+						ended.await();
+						return file.getPath() + " - " + (System.currentTimeMillis() - start) + "ms timeout";
+					}
+					// the solver is already writing its result
+					opt = future.get();
+				}
+			}
+			return file.getPath() + " " + opt + " " + (System.currentTimeMillis() - start) + "ms" +
+					(timeout ? " timeout" : "");
+		} catch (ExecutionException e) {
+			return file.getPath() + " error " + e.getCause();
+		}
+	}
+
+	/**
+	 * Solves one instance and writes its result, unless the worker has
+	 * given it up by then.
+	 */
+	private int solve(File file, CancellationToken cancel, AtomicBoolean decided) throws IOException
+	{
+		LabeledGraph g = Instance.read( file );
+		Solver solver = new Solver();
+		if (timeLimit > 0) {
+			solver.setCancellationToken( cancel );
+		}
+		if (atomCache != null) {
+			solver.setAtomCache( atomCache );
+		}
+		Stats stats = null;
+		if (collectStats) {
+			stats = new Stats();
+			solver.setStats( stats );
+		}
+		solver.solve( g );
+		if (!decided.compareAndSet( false, true )) {
+			return -1;
+		}
+		File out = new File( file.getPath() + OUTPUT_SUFFIX );
+		try (PrintStream ps = new PrintStream( new BufferedOutputStream( new FileOutputStream( out ) ), false )) {
+			solver.writeFill( g, ps );
+		}
+		if (stats != null) {
+			stats.put( "n", g.n );
+			stats.put( "m", g.edges() );
+			stats.put( "fill", solver.getOpt() );
+			try (PrintStream ps = new PrintStream( new FileOutputStream( file.getPath() + STATS_SUFFIX ) )) {
+				stats.write( ps );
+			}
+		}
+		return solver.getOpt();
+	}
+
+	/**
+	 * Lists the input files given on the command line; a directory stands
+	 * for all files in it whose names end with {@code .graph}.
+	 */
+	private static List< File > inputFiles(List< String > paths)
+	{
+		List< File > files = new ArrayList<>();
+		for (String path: paths) {
+			File file = new File( path );
+			if (file.isDirectory()) {
+				File[] children = file.listFiles( (dir, name) -> name.endsWith( ".graph" ) );
+				Arrays.sort( children );
+				files.addAll( Arrays.asList( children ) );
+			} else {
+				files.add( file );
+			}
+		}
+		return files;
+	}
+
+	/**
+	 * Usage: {@code BatchSolver [-w workers] [-l seconds] [-c file [-cs megabytes]] [-s] file-or-directory...}
+	 */
+	public static void main(String[] args) throws InterruptedException, IOException
+	{
+		int nWorkers = Runtime.getRuntime().availableProcessors();
+		long timeLimit = 0;
+		String cacheFile = null;
+		int cacheSize = Solver.DEFAULT_CACHE_SIZE;
+		boolean collectStats = false;
+		List< String > paths = new ArrayList<>();
+		for (int i = 0; i < args.length; i++) {
+			if (args[ i ].equals( "-w" ) && i + 1 < args.length) {
+				nWorkers = Integer.parseInt( args[ ++i ] );
+			} else if (args[ i ].equals( "-l" ) && i + 1 < args.length) {
+				timeLimit = (long) (Double.parseDouble( args[ ++i ] ) * 1000);
+			} else if (args[ i ].equals( "-c" ) && i + 1 < args.length) {
+				cacheFile = args[ ++i ];
+			} else if (args[ i ].equals( "-cs" ) && i + 1 < args.length) {
+				cacheSize = Integer.parseInt( args[ ++i ] ) << 20;
+			} else if (args[ i ].equals( "-s" )) {
+				collectStats = true;
+			} else {
+				paths.add( args[ i ] );
+			}
+		}
+		BatchSolver batch = new BatchSolver( nWorkers, timeLimit );
+		batch.setCollectStats( collectStats );
+		AtomCache atomCache = null;
+		if (cacheFile != null) {
+			atomCache = new AtomCache( new File( cacheFile ), cacheSize );
+			batch.setAtomCache( atomCache );
+		}
+		batch.solveAll( inputFiles( paths ) );
+		if (atomCache != null) {
+			atomCache.close();
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package fillin.main;
 
+import tw.common.EdgeSet;
 import tw.common.LabeledGraph;
 import tw.common.XBitSet;
 
@@ -16,11 +17,24 @@ public class Bounds {
 	int lb;
 	int ub;
 
+	/**
+	 * work sets for each depth of the cycle enumeration,
+	 * so that the enumeration allocates nothing
+	 */
+	XBitSet[] candidate;
+	XBitSet[] deleted;
+
 	public Bounds(LabeledGraph g) {
 		this.g = g;
 		neighborSet = new XBitSet[g.n];
 		chordNeighborSet = new XBitSet[g.n];
 		path = new int[g.n];
+		candidate = new XBitSet[MAX_CYCLE_LENGTH];
+		deleted = new XBitSet[MAX_CYCLE_LENGTH];
+		for (int i = 0; i < MAX_CYCLE_LENGTH; i++) {
+			candidate[i] = new XBitSet(g.n);
+			deleted[i] = new XBitSet(g.n);
+		}
 	}
 
 	public int lowerbound() {
@@ -30,16 +44,81 @@ public class Bounds {
 	public int lowerbound(XBitSet component, XBitSet separator) {
 		setSubgraph(component, separator);
 		lb = 0;
-		XBitSet available = (XBitSet) vertexSet.clone();
+		XBitSet available = vertexSet.clone();
+		XBitSet work = new XBitSet(g.n);
 		for (int v = vertexSet.nextSetBit(0); v >= 0;
 				v = vertexSet.nextSetBit(v + 1)) {
 			available.clear(v);
 			path[0] = v;
-			generateChordlessCycles(v, 1, (XBitSet) available.clone());
+			generateChordlessCycles(v, 1, work.copyFrom(available));
 		}
 		return lb;
 	}
 
+	/**
+	 * Computes a triangulation of the graph by greedy minimum-fill
+	 * elimination: a vertex whose neighborhood among the remaining
+	 * vertices misses the fewest edges is eliminated first, and its
+	 * remaining neighborhood is made a clique.
+	 * @return the fill edges of the triangulation
+	 */
+	public EdgeSet minFillTriangulation() {
+		XBitSet[] nb = new XBitSet[g.n];
+		for (int v = 0; v < g.n; v++) {
+			nb[v] = g.neighborSet[v].clone();
+		}
+		XBitSet remaining = g.all.clone();
+		int[] fill = new int[g.n];
+		for (int v = 0; v < g.n; v++) {
+			fill[v] = countFill(nb, nb[v]);
+		}
+		EdgeSet result = new EdgeSet();
+		for (int i = 0; i < g.n; i++) {
+			int best = -1;
+			for (int v = remaining.nextSetBit(0); v >= 0; v = remaining.nextSetBit(v + 1)) {
+				if (best < 0 || fill[v] < fill[best]) {
+					best = v;
+				}
+			}
+			remaining.clear(best);
+			XBitSet clique = nb[best];
+			for (int u = clique.nextSetBit(0); u >= 0; u = clique.nextSetBit(u + 1)) {
+				nb[u].clear(best);
+			}
+			if (fill[best] > 0) {
+				for (int u = clique.nextSetBit(0); u >= 0; u = clique.nextSetBit(u + 1)) {
+					for (int w = clique.nextSetBit(u + 1); w >= 0; w = clique.nextSetBit(w + 1)) {
+						if (!nb[u].get(w)) {
+							nb[u].set(w);
+							nb[w].set(u);
+							result.add(u, w);
+						}
+					}
+				}
+			}
+			// fill counts change for the neighbors of best and for
+			// the vertices adjacent to some of them
+			XBitSet affected = clique.clone();
+			for (int u = clique.nextSetBit(0); u >= 0; u = clique.nextSetBit(u + 1)) {
+				affected.or(nb[u]);
+			}
+			for (int u = affected.nextSetBit(0); u >= 0; u = affected.nextSetBit(u + 1)) {
+				fill[u] = countFill(nb, nb[u]);
+			}
+		}
+		ub = result.size();
+		return result;
+	}
+
+	private int countFill(XBitSet[] nb, XBitSet set) {
+		int size = set.cardinality();
+		int degSum = 0;
+		for (int u = set.nextSetBit(0); u >= 0; u = set.nextSetBit(u + 1)) {
+			degSum += set.intersectionCardinality(nb[u]);
+		}
+		return (size * (size - 1) - degSum) / 2;
+	}
+
 	private void setSubgraph(XBitSet component, XBitSet separator) {
 		vertexSet = component.unionWith(separator);
 		for (int v = vertexSet.nextSetBit(0); v >= 0; v = vertexSet.nextSetBit(v + 1)) {
@@ -48,7 +127,7 @@ public class Bounds {
 				neighborSet[v].or(separator);
 			}
 			neighborSet[v].clear(v);
-			chordNeighborSet[v] = (XBitSet) neighborSet[v].clone();
+			chordNeighborSet[v] = neighborSet[v].clone();
 		}
 	}
 
@@ -73,13 +152,13 @@ public class Bounds {
 		if (i >= 3 && chordNeighborSet[last].get(v)) {
 			return false;
 		}
-		XBitSet candidate = available.intersectWith(neighborSet[last]);
+		XBitSet candidate = this.candidate[i].setIntersection(available, neighborSet[last]);
 		for (int w = candidate.nextSetBit(0); w >= 0; w = candidate.nextSetBit(w + 1)) {
 			path[i] = w;
 			available.clear(w);
 			XBitSet del = null;
 			if (i >= 2) {
-				del = available.intersectWith(chordNeighborSet[last]);
+				del = deleted[i].setIntersection(available, chordNeighborSet[last]);
 				available.andNot(del);
 			}
 
@@ -0,0 +1,69 @@
+package fillin.main;
+
+/**
+ * A flag shared between the code that runs a search and the code that
+ * wants to stop it. The token is cancelled explicitly, when its deadline
+ * passes or when its parent is. The search polls {@link #isCancelled()} at
+ * points where it can stop with a consistent state.
+ */
+public class CancellationToken {
+	private volatile boolean cancelled;
+	private final long deadline;
+
+	/**
+	 * the token whose cancellation cancels this one; {@code null} if none
+	 */
+	private final CancellationToken parent;
+
+	/**
+	 * Creates a token without a deadline.
+	 */
+	public CancellationToken() {
+		this(Long.MAX_VALUE);
+	}
+
+	/**
+	 * Creates a token without a deadline that is also cancelled when the
+	 * given token is, e.g. for a part of the search that the given token
+	 * stops. The parent is not cancelled with it.
+	 * @param parent the parent token; {@code null} if none
+	 */
+	public CancellationToken(CancellationToken parent) {
+		this(Long.MAX_VALUE, parent);
+	}
+
+	/**
+	 * Creates a token that is cancelled when the given time passes.
+	 * @param deadline deadline in the time base of {@link System#nanoTime()};
+	 * {@code Long.MAX_VALUE} for no deadline
+	 */
+	public CancellationToken(long deadline) {
+		this(deadline, null);
+	}
+
+	private CancellationToken(long deadline, CancellationToken parent) {
+		this.deadline = deadline;
+		this.parent = parent;
+	}
+
+	/**
+	 * Creates a token that is cancelled after the given number of milliseconds.
+	 */
+	public static CancellationToken after(long millis) {
+		return new CancellationToken(System.nanoTime() + millis * 1000000L);
+	}
+
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		if (!cancelled && deadline != Long.MAX_VALUE && System.nanoTime() - deadline >= 0) {
+			cancelled = true;
+		}
+		if (!cancelled && parent != null && parent.isCancelled()) {
+			cancelled = true;
+		}
+		return cancelled;
+	}
+}
@@ -0,0 +1,205 @@
+package fillin.main;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import tw.common.EdgeSet;
+import tw.common.Graph;
+
+/**
+ * A canonical numbering of the vertices of a graph together with the
+ * byte encoding of the graph under that numbering.
+ * The numbering is obtained by color refinement, starting from the degrees;
+ * while some color class has more than one vertex, the smallest vertex of
+ * the first such class is individualized and the refinement is repeated.
+ * Graphs whose refinement becomes discrete get the same key whenever
+ * they are isomorphic; for highly symmetric graphs the individualization
+ * may depend on the input order, in which case isomorphic graphs may get
+ * different keys. Equal keys always mean equal graphs under the numbering,
+ * so a fill-in stored under a key is valid for every graph with that key.
+ */
+public class CanonicalForm {
+	/**
+	 * {@code position[v]} is the canonical number of vertex {@code v}
+	 */
+	final int[] position;
+
+	/**
+	 * {@code vertex[i]} is the vertex whose canonical number is {@code i}
+	 */
+	final int[] vertex;
+
+	/**
+	 * the encoding of the graph under the canonical numbering
+	 */
+	final byte[] key;
+
+	public CanonicalForm(Graph g) {
+		int n = g.n;
+		int[] color = new int[n];
+		for (int v = 0; v < n; v++) {
+			color[v] = g.degree[v];
+		}
+		int classes = rank(color, color.clone());
+		classes = refine(g, color, classes);
+		while (classes < n) {
+			int[] size = new int[n];
+			for (int v = 0; v < n; v++) {
+				size[color[v]]++;
+			}
+			int c = 0;
+			while (size[c] == 1) {
+				c++;
+			}
+			int[] split = new int[n];
+			boolean first = true;
+			for (int v = 0; v < n; v++) {
+				split[v] = 2 * color[v];
+				if (color[v] == c) {
+					if (first) {
+						first = false;
+					} else {
+						split[v]++;
+					}
+				}
+			}
+			classes = rank(color, split);
+			classes = refine(g, color, classes);
+		}
+
+		position = color;
+		vertex = new int[n];
+		for (int v = 0; v < n; v++) {
+			vertex[position[v]] = v;
+		}
+		key = encode(g);
+	}
+
+	/**
+	 * Refines the coloring until the number of color classes stops growing.
+	 * @return the number of color classes
+	 */
+	private static int refine(Graph g, int[] color, int classes) {
+		int n = g.n;
+		while (true) {
+			int[][] signature = new int[n][];
+			for (int v = 0; v < n; v++) {
+				int[] sig = new int[g.degree[v] + 1];
+				for (int i = 0; i < g.degree[v]; i++) {
+					sig[i + 1] = color[g.neighbor[v][i]];
+				}
+				Arrays.sort(sig, 1, sig.length);
+				sig[0] = color[v];
+				signature[v] = sig;
+			}
+			Integer[] order = new Integer[n];
+			for (int v = 0; v < n; v++) {
+				order[v] = v;
+			}
+			Arrays.sort(order, (a, b) -> compare(signature[a], signature[b]));
+			int c = 0;
+			for (int i = 0; i < n; i++) {
+				if (i > 0 && compare(signature[order[i - 1]], signature[order[i]]) != 0) {
+					c++;
+				}
+				color[order[i]] = c;
+			}
+			if (c + 1 == classes) {
+				return classes;
+			}
+			classes = c + 1;
+		}
+	}
+
+	/**
+	 * Replaces the colors by the ranks of the given values.
+	 * @return the number of distinct values
+	 */
+	private static int rank(int[] color, int[] value) {
+		int[] sorted = value.clone();
+		Arrays.sort(sorted);
+		int k = 0;
+		for (int i = 0; i < sorted.length; i++) {
+			if (i == 0 || sorted[i] != sorted[i - 1]) {
+				sorted[k++] = sorted[i];
+			}
+		}
+		for (int v = 0; v < color.length; v++) {
+			color[v] = Arrays.binarySearch(sorted, 0, k, value[v]);
+		}
+		return k;
+	}
+
+	private static int compare(int[] a, int[] b) {
+		if (a.length != b.length) {
+			return a.length - b.length;
+		}
+		for (int i = 0; i < a.length; i++) {
+			if (a[i] != b[i]) {
+				return Integer.compare(a[i], b[i]);
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Encodes the number of vertices and, for each canonical number i,
+	 * the gaps to the larger canonical numbers adjacent to i, as varints
+	 * terminated by 0.
+	 */
+	private byte[] encode(Graph g) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writeVarint(out, g.n);
+		int[] row = new int[g.n];
+		for (int i = 0; i < g.n; i++) {
+			int v = vertex[i];
+			int k = 0;
+			for (int j = 0; j < g.degree[v]; j++) {
+				int p = position[g.neighbor[v][j]];
+				if (p > i) {
+					row[k++] = p;
+				}
+			}
+			Arrays.sort(row, 0, k);
+			int prev = i;
+			for (int j = 0; j < k; j++) {
+				writeVarint(out, row[j] - prev);
+				prev = row[j];
+			}
+			writeVarint(out, 0);
+		}
+		return out.toByteArray();
+	}
+
+	private static void writeVarint(ByteArrayOutputStream out, int x) {
+		while ((x & ~0x7f) != 0) {
+			out.write((x & 0x7f) | 0x80);
+			x >>>= 7;
+		}
+		out.write(x);
+	}
+
+	/**
+	 * Converts fill edges between vertices into pairs of canonical numbers.
+	 */
+	int[] toCanonical(EdgeSet fill) {
+		long[] edges = fill.toArray();
+		int[] result = new int[2 * edges.length];
+		for (int i = 0; i < edges.length; i++) {
+			result[2 * i] = position[EdgeSet.first(edges[i])];
+			result[2 * i + 1] = position[EdgeSet.second(edges[i])];
+		}
+		return result;
+	}
+
+	/**
+	 * Converts pairs of canonical numbers back into fill edges between vertices.
+	 */
+	EdgeSet fromCanonical(int[] pairs) {
+		EdgeSet fill = new EdgeSet();
+		for (int i = 0; i < pairs.length; i += 2) {
+			fill.add(vertex[pairs[i]], vertex[pairs[i + 1]]);
+		}
+		return fill;
+	}
+}
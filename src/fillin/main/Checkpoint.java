@@ -0,0 +1,188 @@
+package fillin.main;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import tw.common.Graph;
+import tw.common.XBitSet;
+
+/**
+ * The checkpoint file of one exact search, from which an interrupted
+ * search can be resumed. The file is named after a hash of the graph and
+ * the upper bound of the search, so that the searches on different atoms
+ * can share a directory. A search claims its file for as long as it runs;
+ * another search with the same graph and bound running meanwhile, on an
+ * identical atom, gets a file with a number added to the name, so that
+ * neither overwrites the other. Both searches being the same, either
+ * file resumes either of them. The directory must not be shared by
+ * concurrent processes.
+ * <p>
+ * The file is rewritten as a whole, through a temporary file that is
+ * then renamed, so that a crash while writing leaves the previous
+ * checkpoint in place. A checkpoint is due once the interval has passed
+ * since the last, and no sooner than {@code OVERHEAD} times the time the
+ * last one took to write, so that writing takes a bounded share of the
+ * search however short the interval.
+ * <p>
+ * File layout: the magic number, the version, the number of vertices
+ * and the hash of the graph, followed by the records written by
+ * {@link Decomposer}. A vertex set is written as its
+ * {@code (n + 63) / 64} words.
+ */
+public class Checkpoint {
+	private static final int MAGIC = 0x46494b50;
+	private static final int VERSION = 2;
+	private static final int OVERHEAD = 10;
+
+	/**
+	 * the files claimed by the searches running
+	 */
+	private static final Set<File> claimed = ConcurrentHashMap.newKeySet();
+
+	private final Graph g;
+	private final long hash;
+	private final File file;
+	private final long interval;
+	private long lastWrite;
+	private long lastDuration;
+	private long begun;
+
+	private Checkpoint(Graph g, long hash, File file, long interval) {
+		this.g = g;
+		this.hash = hash;
+		this.file = file;
+		this.interval = interval;
+		this.lastWrite = System.currentTimeMillis();
+	}
+
+	/**
+	 * Claims the checkpoint file of a search, until {@link #release}.
+	 * @param dir the directory of the checkpoint files
+	 * @param g the graph searched
+	 * @param upperbound the upper bound of the search; -1 if none
+	 * @param interval the time in milliseconds between two checkpoints
+	 */
+	public static Checkpoint claim(File dir, Graph g, int upperbound, long interval) {
+		long hash = hash(g) * 0x9E3779B97F4A7C15L + upperbound;
+		for (int k = 0; ; k++) {
+			String name = k == 0 ? String.format("%016x.ckpt", hash)
+					: String.format("%016x-%d.ckpt", hash, k);
+			File file = new File(dir, name);
+			if (claimed.add(file)) {
+				return new Checkpoint(g, hash, file, interval);
+			}
+		}
+	}
+
+	/**
+	 * Gives up the file, once the search is over.
+	 */
+	public void release() {
+		claimed.remove(file);
+	}
+
+	private static long hash(Graph g) {
+		long h = g.n;
+		for (int v = 0; v < g.n; v++) {
+			h = h * 0x9E3779B97F4A7C15L + g.neighborSet[v].fingerprint();
+		}
+		return h;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Tells whether the next checkpoint is due.
+	 */
+	public boolean isDue() {
+		return System.currentTimeMillis() - lastWrite >= Math.max(interval, OVERHEAD * lastDuration);
+	}
+
+	/**
+	 * Starts a new checkpoint, written to a temporary file until
+	 * {@link #commit} is called.
+	 */
+	public DataOutputStream begin() throws IOException {
+		begun = System.currentTimeMillis();
+		DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(temporary())));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(g.n);
+		out.writeLong(hash);
+		return out;
+	}
+
+	/**
+	 * Closes the stream returned by {@link #begin} and makes its content
+	 * the checkpoint.
+	 */
+	public void commit(DataOutputStream out) throws IOException {
+		out.close();
+		Files.move(temporary().toPath(), file.toPath(),
+				StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		lastWrite = System.currentTimeMillis();
+		lastDuration = lastWrite - begun;
+	}
+
+	private File temporary() {
+		return new File(file.getPath() + ".tmp");
+	}
+
+	/**
+	 * Opens the checkpoint for reading.
+	 * @return the stream positioned after the header; {@code null} if there
+	 * is no checkpoint or it was written for another graph
+	 */
+	public DataInputStream open() throws IOException {
+		if (!file.exists()) {
+			return null;
+		}
+		DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(file)));
+		if (in.readInt() != MAGIC || in.readInt() != VERSION
+				|| in.readInt() != g.n || in.readLong() != hash) {
+			in.close();
+			return null;
+		}
+		return in;
+	}
+
+	/**
+	 * Removes the checkpoint, once the search is over.
+	 */
+	public void delete() {
+		file.delete();
+	}
+
+	public void writeSet(DataOutputStream out, XBitSet set) throws IOException {
+		long[] words = set.toLongArray();
+		int nWords = (g.n + 63) >>> 6;
+		for (int i = 0; i < nWords; i++) {
+			out.writeLong(i < words.length ? words[i] : 0);
+		}
+	}
+
+	public XBitSet readSet(DataInputStream in) throws IOException {
+		XBitSet set = new XBitSet(g.n);
+		int nWords = (g.n + 63) >>> 6;
+		for (int i = 0; i < nWords; i++) {
+			for (long w = in.readLong(); w != 0; w &= w - 1) {
+				set.set(64 * i + Long.numberOfTrailingZeros(w));
+			}
+		}
+		return set;
+	}
+}
@@ -1,44 +1,397 @@
 package fillin.main;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
-import java.util.PriorityQueue;
 import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 
 import tw.common.BlockSieve;
+import tw.common.BucketQueue;
+import tw.common.HandleTable;
 import tw.common.LabeledGraph;
 import tw.common.TreeDecomposition;
 import tw.common.XBitSet;
+import tw.common.XBitSetArena;
+import tw.common.XBitSetMap;
+import tw.common.XBitSetStore;
 
 public class Decomposer {
+	/**
+	 * the smallest number of PMCs or MBlocks processed in parallel
+	 */
+	private static final int PARALLEL_THRESHOLD = 16;
+
+	/**
+	 * the number of PMCs or MBlocks processed between two polls of the
+	 * cancellation token within a level
+	 */
+	private static final int CANCELLATION_INTERVAL = 256;
+
+	/**
+	 * the default number of PMCs whose blocks are cached
+	 */
+	public static final int DEFAULT_BLOCK_CACHE_SIZE = 1 << 16;
 	
 	LabeledGraph g;
 	int lowerbound;
+	boolean lowerboundKnown;
+
+	/**
+	 * computes the lower bounds on the costs of blocks, one per thread;
+	 * {@code null} if the blocks are charged the target cost only
+	 */
+	ThreadLocal<Bounds> blockBounds;
+
+	/**
+	 * the lower bounds on the costs of blocks, by component, shared by
+	 * the runs of a speculative search; {@code null} if not shared
+	 */
+	Map<XBitSet, Integer> sharedBlockBounds;
 
 	BlockSieve tBlockSieve;
 	Queue< MBlock > readyQueue;
-	Map<XBitSet, MBlock> mBlockMap;
-	Map<XBitSet, TBlock> tBlockMap;
-	Map<XBitSet, Block> blockMap;
-	Map<XBitSet, PMC> pmcMap;
-//	Map<XBitSet, Boolean> pmcCache;
-	PriorityQueue<PMC> pmcQueue;
+	/**
+	 * the MBlocks by the handle of their inbound component, the TBlocks
+	 * by the handle of their separator, and the blocks by the handle of
+	 * their component
+	 */
+	HandleTable<MBlock> mBlockMap;
+	HandleTable<TBlock> tBlockMap;
+	HandleTable<Block> blockMap;
+
+	/**
+	 * the blocks of the PMCs recently found by isPMC; {@code null} if not cached
+	 */
+	BlockCache blockCache;
+	int blockCacheSize = DEFAULT_BLOCK_CACHE_SIZE;
+
+	/**
+	 * the sets held by blocks, TBlocks, MBlocks and PMCs, each distinct set
+	 * stored once; the maps of the search are keyed by their handles, so
+	 * that a set met again is hashed once and looked up by an int in each
+	 */
+	XBitSetStore sets;
+	HandleTable<PMC> pmcMap;
+	BucketQueue<PMC> pmcQueue;
+
+	// what follows does not depend on the tentative upper bound and,
+	// in the incremental mode, is kept across the iterations of decompose
+
+	/**
+	 * the separators tested by isPMC, keyed by the sets: they are far more
+	 * than the sets of the store and mostly not PMCs, so they are not
+	 * interned
+	 */
+	Map<XBitSet, Boolean> pmcCache;
+
+	/**
+	 * replaces pmcCache in the off-heap mode: 1 for a PMC, 0 otherwise;
+	 * {@code null} in the on-heap mode
+	 */
+	XBitSetArena pmcArena;
+	boolean offHeap;
+	HandleTable<PMC> pmcPool;
+	HandleTable<TBlock> tBlockPool;
+	boolean incremental = true;
 	
-	PMC solution;
+	volatile PMC solution;
 	int targetCost;
 	int tentativeUB;
 	boolean noUpperbound;
+	CancellationToken cancel;
+
+	/**
+	 * the time in milliseconds a call of {@code decompose} may take;
+	 * 0 for no limit
+	 */
+	long timeLimit;
+
+	/**
+	 * the time in the time base of {@link System#nanoTime()} when the
+	 * current call of {@code decompose} gives up, if there is a time limit
+	 */
+	long deadline;
+
+	/**
+	 * the minimum fill-in is proven to be at least this by the levels
+	 * completed so far; read by the speculative search of another thread
+	 */
+	volatile int proven;
+
+	/**
+	 * the outcome of the last call of {@code decompose} if it failed
+	 */
+	PartialResult partial;
+
+	/**
+	 * record of the current search; {@code null} if statistics are off
+	 */
+	Stats.Search search;
+	Stats stats;
+
+	/**
+	 * counted only when statistics are on
+	 */
+	LongAdder sieveQueries = new LongAdder();
+	LongAdder sieveMatches = new LongAdder();
+	LongAdder pmcCacheHits = new LongAdder();
+	LongAdder pmcCacheMisses = new LongAdder();
+	LongAdder blockCacheHits = new LongAdder();
+	LongAdder blockCacheMisses = new LongAdder();
+
+	/**
+	 * pool in which the PMCs and MBlocks of a level are processed;
+	 * {@code null} if they are processed sequentially
+	 */
+	ForkJoinPool pool;
+
+	/**
+	 * guards the sieve in the parallel mode; {@code null} otherwise
+	 */
+	ReadWriteLock sieveLock;
+
+	/**
+	 * the MBlocks of the current wave that have queried the sieve, in the
+	 * parallel mode. A TBlock put into the sieve later in the wave is
+	 * plugged with those it contains, which the sequential order would
+	 * have had find it.
+	 */
+	Queue<MBlock> queried;
+
+	/**
+	 * the number of tentative upper bounds tried at the same time
+	 * by {@code decompose(-1)}
+	 */
+	int speculation = 1;
+
+	/**
+	 * the directory of the checkpoints; {@code null} if none are written
+	 */
+	File checkpointDir;
+	long checkpointInterval;
+	boolean resume;
+
+	/**
+	 * the checkpoint of the search running; {@code null} if none is written
+	 */
+	Checkpoint checkpoint;
+
+	/**
+	 * the TBlocks put into the sieve under the current tentative upper
+	 * bound, kept only for the checkpoint
+	 */
+	List<TBlock> sieved;
 
 	public void setNoUpperbound(boolean noUpperbound) {
 		this.noUpperbound = noUpperbound;
 	}
 
+	/**
+	 * In the incremental mode (the default) the PMC tests and the blocks
+	 * of PMCs and TBlocks computed under one tentative upper bound are
+	 * reused under the next; only the costs, the queues and the sieve,
+	 * which depend on the bound, are rebuilt. Otherwise these are
+	 * recomputed in every iteration.
+	 */
+	public void setIncremental(boolean incremental) {
+		this.incremental = incremental;
+	}
+
+	/**
+	 * In the off-heap mode the separators tested by {@code isPMC}, which
+	 * are far more than the blocks, are kept in an {@link XBitSetArena}
+	 * outside the heap instead of as objects in a map. The arena is
+	 * freed when {@code decompose} returns.
+	 */
+	public void setOffHeap(boolean offHeap) {
+		this.offHeap = offHeap;
+		clearPools();
+	}
+
+	/**
+	 * Sets the token polled by {@code decompose} at each cost level and
+	 * every {@link #CANCELLATION_INTERVAL} PMCs or MBlocks within a level.
+	 * When it is cancelled, {@code decompose} gives up and returns {@code null},
+	 * and {@link #getPartialResult} tells what the search has proven.
+	 */
+	public void setCancellationToken(CancellationToken cancel) {
+		this.cancel = cancel;
+	}
+
+	/**
+	 * Makes each call of {@code decompose} give up, as if cancelled, when
+	 * the given number of milliseconds has passed; 0 for no limit.
+	 */
+	public void setTimeLimit(long millis) {
+		this.timeLimit = millis;
+	}
+
+	/**
+	 * Makes {@code decompose} record the size of its search space,
+	 * level by level, in the given statistics.
+	 */
+	public void setStats(Stats stats) {
+		this.stats = stats;
+	}
+
+	/**
+	 * Makes {@code decompose} process the PMCs and the ready MBlocks of
+	 * each cost level in parallel in the given pool. The blocks found at
+	 * a level all have the cost of the level, so the order in which they
+	 * are found does not affect the cost of the result.
+	 */
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+		clearPools();
+	}
+
+	/**
+	 * Makes {@code decompose(-1)} try the given number of tentative upper
+	 * bounds at the same time, each in a run of its own thread. The first
+	 * run that finds a decomposition has found an optimal one, so the other
+	 * runs are cancelled; a run that fails proves the minimum fill-in
+	 * larger than its bound, so the runs with smaller bounds are cancelled
+	 * and the next bound not yet tried is started in its place.
+	 */
+	public void setSpeculation(int nRuns) {
+		this.speculation = Math.max(1, nRuns);
+	}
+
+	/**
+	 * With block bounds on, a TBlock or a PMC with an inbound block not
+	 * solved yet is charged a lower bound on the cost of the block computed
+	 * by {@link Bounds}, when that is larger than the target cost, instead
+	 * of the target cost alone. Fewer TBlocks are then kept under a tight
+	 * upper bound and the PMCs wait in the queue until a level that can
+	 * afford them, at the price of a chordless cycle search per block.
+	 */
+	public void setBlockBounds(boolean on) {
+		blockBounds = on ? ThreadLocal.withInitial(() -> new Bounds(g)) : null;
+	}
+
+	/**
+	 * Sets the number of separators found to be PMCs by {@code isPMC}
+	 * whose blocks are kept until the PMC is made, the least recently
+	 * used being evicted first; 0 turns the cache off.
+	 */
+	public void setBlockCacheSize(int size) {
+		blockCacheSize = size;
+		newBlockMap();
+	}
+
+	private void newBlockMap() {
+		blockMap = new HandleTable<>();
+		blockCache = blockCacheSize > 0 ? new BlockCache(blockCacheSize) : null;
+	}
+
+	/**
+	 * Makes {@code decompose} write a checkpoint of its search into the
+	 * given directory at the end of a cost level, when one is due by
+	 * {@link Checkpoint#isDue}, and delete it when the search is over. If
+	 * {@code resume} is set, a search that finds a checkpoint for the
+	 * same graph and upper bound there starts from its cost level instead
+	 * of from scratch. The speculative runs of {@link #setSpeculation}
+	 * write no checkpoints.
+	 * @param interval the time in milliseconds between two checkpoints
+	 */
+	public void setCheckpoint(File dir, long interval, boolean resume) {
+		this.checkpointDir = dir;
+		this.checkpointInterval = interval;
+		this.resume = resume;
+	}
+
+	public boolean isCancelled() {
+		if (timeLimit > 0 && System.nanoTime() - deadline >= 0) {
+			return true;
+		}
+		return cancel != null && cancel.isCancelled();
+	}
+
+	/**
+	 * What {@code decompose} knows about the minimum fill-in when it fails.
+	 */
+	public static class PartialResult {
+		/**
+		 * the minimum fill-in is proven to be at least this
+		 */
+		public final int lowerbound;
+
+		/**
+		 * the upper bound {@code decompose} was called with, which is then
+		 * neither proven nor refuted; -1 if there is none or it has been
+		 * refuted
+		 */
+		public final int upperbound;
+
+		PartialResult(int lowerbound, int upperbound) {
+			this.lowerbound = lowerbound;
+			this.upperbound = upperbound;
+		}
+	}
+
+	/**
+	 * Returns the bounds proven by the last call of {@code decompose} if it
+	 * returned {@code null}, either because it was cancelled or because its
+	 * upper bound was too small; {@code null} if it found a decomposition.
+	 */
+	public PartialResult getPartialResult() {
+		return partial;
+	}
+
+	/**
+	 * Ends a search that has not found a decomposition.
+	 */
+	private TreeDecomposition fail(int upperbound) {
+		finishSearch(-1);
+		if (upperbound >= 0 && proven > upperbound) {
+			upperbound = -1;
+		}
+		partial = new PartialResult(proven, upperbound);
+		return null;
+	}
+
 	public Decomposer(LabeledGraph g) {
 		this.g = g;
+		sets = new XBitSetStore();
+		newBlockMap();
+		clearPools();
+	}
+
+	private void clearPools() {
+		if (pmcArena != null) {
+			pmcArena.free();
+		}
+		pmcArena = offHeap ? new XBitSetArena(g.n) : null;
+		if (offHeap) {
+			pmcCache = null;
+		} else {
+			pmcCache = pool != null ? new ConcurrentHashMap<>() : new XBitSetMap<>();
+		}
+		pmcPool = new HandleTable<>();
+		tBlockPool = new HandleTable<>();
 	}
 
 	public int getOpt()
@@ -46,6 +399,18 @@ public class Decomposer {
 		return targetCost;
 	} 
 
+	/**
+	 * Returns the lower bound on the minimum fill-in that {@code decompose}
+	 * starts from, computed on the first call.
+	 */
+	public int getLowerbound() {
+		if (!lowerboundKnown) {
+			lowerbound = new Bounds(g).lowerbound();
+			lowerboundKnown = true;
+		}
+		return lowerbound;
+	}
+
 	public TreeDecomposition decompose(int upperbound) {
 		// if upperbound is given then we have only one iteration
 		// with the given upperbound
@@ -55,8 +420,39 @@ public class Decomposer {
 
 		// we need the lowerbound anyway, to be used in the relevant() method
 		// of TBlock
-		Bounds bounds = new Bounds(g);
-		lowerbound = bounds.lowerbound();
+		lowerbound = getLowerbound();
+		proven = lowerbound;
+		partial = null;
+		if (timeLimit > 0) {
+			deadline = System.nanoTime() + timeLimit * 1000000L;
+		}
+		if (upperbound < 0 && speculation > 1) {
+			return decomposeSpeculatively();
+		}
+		if (checkpointDir == null) {
+			return decomposeLevels(upperbound);
+		}
+		checkpoint = Checkpoint.claim(checkpointDir, g, upperbound, checkpointInterval);
+		try {
+			return decomposeLevels(upperbound);
+		} finally {
+			checkpoint.release();
+			checkpoint = null;
+		}
+	}
+
+	/**
+	 * Runs the search of {@code decompose} once the bounds are set.
+	 */
+	private TreeDecomposition decomposeLevels(int upperbound) {
+		if (stats != null) {
+			search = stats.newSearch(g.n, upperbound);
+			search.setLowerbound(lowerbound);
+			pmcCacheHits.reset();
+			pmcCacheMisses.reset();
+			blockCacheHits.reset();
+			blockCacheMisses.reset();
+		}
 
 		int increment = 1;
 		int start = upperbound;
@@ -67,34 +463,61 @@ public class Decomposer {
 			end = Integer.MAX_VALUE;
 		}
 
-		blockMap = new HashMap<>();
-//		pmcCache = new HashMap<>();
+		newBlockMap();
+
+		DataInputStream resumed = null;
+		if (checkpoint != null && resume) {
+			resumed = openCheckpoint(start, increment, end);
+			if (resumed != null) {
+				if (tentativeUB > start) {
+					// the bounds before it have failed
+					proven = tentativeUB - increment + 1;
+				}
+				start = tentativeUB;
+			}
+		}
 
 		for (tentativeUB = start; tentativeUB <= end; tentativeUB += increment){
+			if (!incremental) {
+				clearPools();
+			}
+			newIteration();
+
+			int firstLevel = 0;
+			if (resumed != null) {
+				// tentativeUB and targetCost have been read from the checkpoint
+				firstLevel = targetCost + 1;
+				if (restore(resumed)) {
+					proven = Math.max(proven, firstLevel);
+				} else {
+					newIteration();
+					firstLevel = 0;
+				}
+				resumed = null;
+			}
 
-			mBlockMap = new HashMap<>();
-			pmcMap = new HashMap<>();
-//			pmcQueue = new TreeSet<>();
-			pmcQueue = new PriorityQueue<>((a, b) -> a.lowerBound - b.lowerBound);
-			tBlockMap = new HashMap<>();
-			tBlockSieve = new BlockSieve(g.n);
-			readyQueue = new LinkedList<>();
-			
-			for (int v = 0; v < g.n; v++) {
-				XBitSet cnb = g.closedNeighborSet( v );
+			if (firstLevel == 0) {
+				targetCost = 0;
+				for (int v = 0; v < g.n; v++) {
+					XBitSet cnb = g.closedNeighborSet( v );
 
-				if (pmcMap.get(cnb) != null || isPMC(cnb) == false) {
-					continue;
+					if (pmcMap.get(sets.find(cnb)) != null || isPMC(cnb) == false) {
+						continue;
+					}
+
+					PMC pmc = newPMC(cnb);
+					pmcMap.put(pmc.id, pmc);
+					pmc.evaluate();
+					if (pmc.lowerBound <= tentativeUB) {
+						pmcQueue.add(pmc);
+					}
 				}
 
-				PMC pmc = new PMC(cnb);
-				pmcMap.put(cnb, pmc);
-				pmcQueue.add(pmc);
+				mBlockMap.forEach(readyQueue::add);
 			}
-
-			readyQueue.addAll( mBlockMap.values() );
 			
-			for (targetCost = 0 ; targetCost <= tentativeUB; targetCost++) {
+			for (targetCost = firstLevel; targetCost <= tentativeUB; targetCost++) {
+				int processed = 0;
 				// (1) all M-blocks with optimal cost < targetCost
 				// that use only bags with fillin <= tentativeUB
 				// have been generated and have the optimal cost computed
@@ -104,46 +527,481 @@ public class Decomposer {
 				// (3) all PMCs whose all inbound M-blocks as in (1)
 				// have been generated
 				while (true) {
+					if (isCancelled()) {
+						break;
+					}
 					ArrayList<PMC> toConsider = new ArrayList<>();
-					while (!pmcQueue.isEmpty()) {
-//						PMC pmc = pmcQueue.first();
-						PMC pmc = pmcQueue.peek();
-						if (pmc.lowerBound <= targetCost) {
-							toConsider.add(pmc);
-//							pmcQueue.remove(pmc);
-							pmcQueue.poll();
-						} else {
-							break;
-						}
+					for (int lb = pmcQueue.minKey(); lb >= 0 && lb <= targetCost; lb = pmcQueue.minKey()) {
+						toConsider.add(pmcQueue.poll());
 					}
 
-					toConsider.forEach(pmc -> pmc.process());
+					processAll(toConsider, pmc -> pmc.process());
+					processed += toConsider.size();
 
 					if (readyQueue.isEmpty()) {
 						break;
 					}
 					
-					while (readyQueue.isEmpty() == false) {
-						MBlock ready = readyQueue.poll();
-						ready.process();
+					if (pool == null) {
+						int k = 0;
+						while (readyQueue.isEmpty() == false) {
+							if (++k % CANCELLATION_INTERVAL == 0 && isCancelled()) {
+								break;
+							}
+							MBlock ready = readyQueue.poll();
+							ready.process();
+						}
+					} else {
+						// in waves: the MBlocks made by one wave form the next
+						while (readyQueue.isEmpty() == false && isCancelled() == false) {
+							ArrayList<MBlock> wave = new ArrayList<>();
+							for (MBlock ready = readyQueue.poll(); ready != null; ready = readyQueue.poll()) {
+								wave.add(ready);
+							}
+							queried.clear();
+							processAll(wave, ready -> ready.process());
+						}
 					}
 				}
 
+				// a level cut short proves nothing, but the solution found,
+				// if any, is optimal all the same
+				if (solution == null && isCancelled()) {
+					return fail(upperbound);
+				}
+
+				if (search != null) {
+					search.addLevel(tentativeUB, targetCost, processed, pmcMap.size(),
+							tBlockMap.size(), mBlockMap.size(), tBlockSieve.size(), sieveQueries.sum(), sieveMatches.sum());
+				}
+
 				if (solution != null) {
 					TreeDecomposition td = constructTD();
+					finishSearch(targetCost);
+					if (checkpoint != null) {
+						checkpoint.delete();
+					}
 					return td;
 				}
 
+				proven = Math.max(proven, targetCost + 1);
+				if (checkpoint != null && checkpoint.isDue()) {
+					writeCheckpoint();
+				}
+
+				// nothing is processed at the levels below the smallest
+				// lower bound in the queue, and nothing at all if it is empty
+				int next = pmcQueue.minKey();
+				if (next < 0) {
+					break;
+				}
+				targetCost = Math.max(targetCost, next - 1);
+				proven = Math.max(proven, Math.min(targetCost, tentativeUB) + 1);
+			}
+			proven = Math.max(proven, tentativeUB + 1);
+		}
+		if (checkpoint != null) {
+			checkpoint.delete();
+		}
+		return fail(upperbound);
+	}
+
+	/**
+	 * Makes the empty state of an iteration of {@code decompose}.
+	 */
+	private void newIteration() {
+		mBlockMap = new HandleTable<>();
+		pmcMap = new HandleTable<>();
+		tBlockMap = new HandleTable<>();
+		tBlockSieve = new BlockSieve(g.n);
+		pmcQueue = new BucketQueue<>(pmc -> pmc.lowerBound, tentativeUB);
+		if (pool == null) {
+			readyQueue = new LinkedList<>();
+		} else {
+			readyQueue = new ConcurrentLinkedQueue<>();
+			sieveLock = new ReentrantReadWriteLock();
+			queried = new ConcurrentLinkedQueue<>();
+		}
+		sieved = checkpoint != null ? new ArrayList<>() : null;
+		sieveQueries.reset();
+		sieveMatches.reset();
+	}
+
+	/**
+	 * Writes the state at the end of a cost level: the bound and the level,
+	 * the PMCs waiting in the queue with their lower bounds, the MBlocks
+	 * by the separators of their PMCs, with their costs, and the TBlocks,
+	 * telling which are in the sieve. Everything else is derived from these.
+	 */
+	private void writeCheckpoint() {
+		try {
+			DataOutputStream out = checkpoint.begin();
+			out.writeInt(tentativeUB);
+			out.writeInt(targetCost);
+			ArrayList<PMC> pending = new ArrayList<>();
+			pmcQueue.forEach(pending::add);
+			out.writeInt(pending.size());
+			for (PMC pmc: pending) {
+				checkpoint.writeSet(out, pmc.separator);
+				out.writeInt(pmc.lowerBound);
+				out.writeBoolean(pmc.ready);
+			}
+			ArrayList<MBlock> mBlocks = new ArrayList<>();
+			mBlockMap.forEach(mBlocks::add);
+			out.writeInt(mBlocks.size());
+			for (MBlock mBlock: mBlocks) {
+				checkpoint.writeSet(out, mBlock.pmc.separator);
+				out.writeInt(mBlock.cost);
+			}
+			Set<TBlock> inSieve = Collections.newSetFromMap(new IdentityHashMap<>());
+			inSieve.addAll(sieved);
+			ArrayList<TBlock> tBlocks = new ArrayList<>();
+			tBlockMap.forEach(tBlocks::add);
+			out.writeInt(tBlocks.size());
+			for (TBlock tBlock: tBlocks) {
+				checkpoint.writeSet(out, tBlock.separator);
+				checkpoint.writeSet(out, tBlock.openComponent);
+				out.writeBoolean(inSieve.contains(tBlock));
+			}
+			checkpoint.commit(out);
+		} catch (IOException e) {
+			System.err.println("c checkpoint not written: " + e);
+		}
+	}
+
+	/**
+	 * Opens the checkpoint and reads its bound and level into tentativeUB
+	 * and targetCost, if the bound is one that decompose would try.
+	 * @return the stream positioned at the records; {@code null} if there
+	 * is no usable checkpoint
+	 */
+	private DataInputStream openCheckpoint(int start, int increment, int end) {
+		try {
+			DataInputStream in = checkpoint.open();
+			if (in == null) {
+				return null;
+			}
+			tentativeUB = in.readInt();
+			targetCost = in.readInt();
+			if (tentativeUB < start || tentativeUB > end || (tentativeUB - start) % increment != 0) {
+				in.close();
+				return null;
+			}
+			return in;
+		} catch (IOException e) {
+			System.err.println("c checkpoint not read: " + e);
+			return null;
+		}
+	}
+
+	/**
+	 * Rebuilds the state written by {@link #writeCheckpoint}.
+	 * @return false if the checkpoint could not be read, in which case
+	 * the state is partial and must be discarded
+	 */
+	private boolean restore(DataInputStream in) {
+		try (DataInputStream input = in) {
+			int nPMCs = input.readInt();
+			for (int i = 0; i < nPMCs; i++) {
+				PMC pmc = newPMC(checkpoint.readSet(input));
+				pmc.lowerBound = input.readInt();
+				pmc.ready = input.readBoolean();
+				if (pmc.lowerBound < 0 || pmc.lowerBound > tentativeUB) {
+					throw new IOException("lower bound out of range: " + pmc.lowerBound);
+				}
+				pmcMap.put(pmc.id, pmc);
+				pmcQueue.add(pmc);
+			}
+			int nMBlocks = input.readInt();
+			for (int i = 0; i < nMBlocks; i++) {
+				PMC pmc = newPMC(checkpoint.readSet(input));
+				int cost = input.readInt();
+				MBlock mBlock = new MBlock(sets.intern(pmc.getTarget()), pmc, cost);
+				mBlockMap.put(mBlock.id, mBlock);
+			}
+			int nTBlocks = input.readInt();
+			for (int i = 0; i < nTBlocks; i++) {
+				int id = sets.intern(checkpoint.readSet(input));
+				TBlock tBlock = newTBlock(id, getBlock(checkpoint.readSet(input)));
+				tBlockMap.put(tBlock.id, tBlock);
+				if (input.readBoolean()) {
+					sievePut(tBlock.openComponent, tBlock);
+				}
+			}
+			return true;
+		} catch (IOException e) {
+			System.err.println("c checkpoint not read: " + e);
+			return false;
+		}
+	}
+
+	/**
+	 * One run of a speculative search, with its own Decomposer and token.
+	 * It has the settings of the search that starts it, including its pool,
+	 * the time left to it and its token, which cancels the run as well,
+	 * and it takes the lower bound of the graph from it instead of
+	 * computing it again.
+	 */
+	private class Run {
+		final int bound;
+		final Decomposer dec;
+		final CancellationToken token;
+		final CompletableFuture<TreeDecomposition> future;
+
+		Run(int bound, ExecutorService executor, Map<XBitSet, Integer> blockBoundMap) {
+			this.bound = bound;
+			dec = new Decomposer(g);
+			token = new CancellationToken(cancel);
+			dec.setCancellationToken(token);
+			if (timeLimit > 0) {
+				dec.setTimeLimit(Math.max(1, (deadline - System.nanoTime()) / 1000000));
+			}
+			dec.setNoUpperbound(noUpperbound);
+			dec.setIncremental(incremental);
+			dec.setStats(stats);
+			dec.setOffHeap(offHeap);
+			dec.setBlockCacheSize(blockCacheSize);
+			dec.setBlockBounds(blockBounds != null);
+			dec.sharedBlockBounds = blockBoundMap;
+			if (pool != null) {
+				dec.setPool(pool);
+			}
+			dec.lowerbound = lowerbound;
+			dec.lowerboundKnown = true;
+			future = CompletableFuture.supplyAsync(() -> dec.decompose(bound), executor);
+		}
+	}
+
+	/**
+	 * Tries the tentative upper bounds of {@code decompose(-1)} in
+	 * {@code speculation} parallel runs. It waits for a run to end, without
+	 * polling: once this search is cancelled, so are its runs, which then
+	 * end at their next check.
+	 */
+	private TreeDecomposition decomposeSpeculatively() {
+		int increment = 1 + lowerbound / 2;
+		int next = lowerbound + increment;
+		ExecutorService executor = Executors.newFixedThreadPool(speculation, r -> {
+			Thread t = new Thread(r, "speculative-run");
+			t.setDaemon(true);
+			return t;
+		});
+		Map<XBitSet, Integer> blockBoundMap = blockBounds != null ? new ConcurrentHashMap<>() : null;
+		ArrayList<Run> running = new ArrayList<>();
+		try {
+			while (true) {
+				// cancelled runs finish at their next level; until then
+				// the runs started in their place wait in the executor
+				int active = 0;
+				for (Run r: running) {
+					if (!r.token.isCancelled()) {
+						active++;
+					}
+				}
+				for (; active < speculation; active++) {
+					running.add(new Run(next, executor, blockBoundMap));
+					next += increment;
+				}
+				CompletableFuture<?>[] futures = new CompletableFuture<?>[running.size()];
+				for (int i = 0; i < futures.length; i++) {
+					futures[i] = running.get(i).future;
+				}
+				CompletableFuture.anyOf(futures).get();
+				if (isCancelled()) {
+					// each run has proven the levels it has completed
+					for (Run r: running) {
+						proven = Math.max(proven, r.dec.proven);
+					}
+					return fail(-1);
+				}
+				for (Run run: new ArrayList<>(running)) {
+					if (!run.future.isDone()) {
+						continue;
+					}
+					running.remove(run);
+					TreeDecomposition td = run.future.get();
+					if (td != null) {
+						targetCost = run.dec.getOpt();
+						return td;
+					}
+					// a run that fails proves more than its bound,
+					// and one cancelled the levels it has completed
+					proven = Math.max(proven, run.dec.getPartialResult().lowerbound);
+				}
+				for (Run r: running) {
+					if (r.bound < proven) {
+						r.token.cancel();
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return fail(-1);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			for (Run r: running) {
+				r.token.cancel();
+			}
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Returns a lower bound on the cost of an inbound block without an
+	 * MBlock of at most the target cost: the target cost itself, raised by
+	 * the fill-in forced by the chordless cycles of the block with its
+	 * separator made a clique, which is computed once per block.
+	 */
+	private int inboundCost(Block block) {
+		if (blockBounds == null) {
+			return targetCost;
+		}
+		if (block.costBound < 0) {
+			Integer bound = sharedBlockBounds == null ? null : sharedBlockBounds.get(block.component);
+			if (bound == null) {
+				bound = blockBounds.get().lowerbound(block.component, block.separator);
+				if (sharedBlockBounds != null) {
+					sharedBlockBounds.put(block.component, bound);
+				}
+			}
+			block.costBound = bound;
+		}
+		return Math.max(targetCost, block.costBound);
+	}
+
+	/**
+	 * Applies the action to each of the items, in parallel if there is a
+	 * pool and enough items. Returns when all items have been processed.
+	 */
+	private <T> void processAll(List<T> items, Consumer<T> action) {
+		if (pool == null || items.size() < PARALLEL_THRESHOLD) {
+			processChunk(items, action);
+			return;
+		}
+		int nTasks = Math.min(items.size() / (PARALLEL_THRESHOLD / 2), 4 * pool.getParallelism());
+		ArrayList<ForkJoinTask<?>> tasks = new ArrayList<>(nTasks);
+		for (int i = 0; i < nTasks; i++) {
+			List<T> chunk = items.subList(i * items.size() / nTasks, (i + 1) * items.size() / nTasks);
+			tasks.add(ForkJoinTask.adapt(() -> processChunk(chunk, action)));
+		}
+		if (ForkJoinTask.getPool() == pool) {
+			ForkJoinTask.invokeAll(tasks);
+		} else {
+			pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+		}
+	}
+
+	/**
+	 * Applies the action to each of the items, stopping early if the search
+	 * is cancelled, which the caller then finds out by polling the token.
+	 */
+	private <T> void processChunk(List<T> items, Consumer<T> action) {
+		for (int i = 0; i < items.size(); i++) {
+			if (i > 0 && i % CANCELLATION_INTERVAL == 0 && isCancelled()) {
+				return;
+			}
+			action.accept(items.get(i));
+		}
+	}
+
+	private void sievePut(XBitSet component, TBlock tBlock) {
+		if (sieveLock == null) {
+			tBlockSieve.put(component, tBlock);
+			if (sieved != null) {
+				sieved.add(tBlock);
+			}
+			return;
+		}
+		ArrayList<MBlock> missed;
+		sieveLock.writeLock().lock();
+		try {
+			tBlockSieve.put(component, tBlock);
+			if (sieved != null) {
+				sieved.add(tBlock);
+			}
+			// no MBlock queries while the write lock is held
+			missed = new ArrayList<>(queried);
+		} finally {
+			sieveLock.writeLock().unlock();
+		}
+		for (MBlock mBlock: missed) {
+			if (mBlock.inbound.isSubset(component)) {
+				tBlock.plugin(mBlock);
 			}
 		}
-		return null;
+	}
+
+	/**
+	 * Returns the TBlocks in the sieve the given MBlock can be plugged
+	 * into. In the parallel mode, the MBlock is recorded in
+	 * {@code queried} in the same step, so that a TBlock put into the
+	 * sieve afterwards is plugged with it by {@code sievePut}.
+	 */
+	private List<TBlock> sieveCollect(MBlock mBlock) {
+		if (sieveLock == null) {
+			return tBlockSieve.collectSuperblocks(mBlock.inbound, mBlock.separator, new ArrayList<>());
+		}
+		sieveLock.readLock().lock();
+		try {
+			queried.add(mBlock);
+			return tBlockSieve.collectSuperblocks(mBlock.inbound, mBlock.separator, new ArrayList<>());
+		} finally {
+			sieveLock.readLock().unlock();
+		}
+	}
+
+	private void finishSearch(int opt) {
+		if (search != null) {
+			search.setCaches(pmcCacheHits.sum(), pmcCacheMisses.sum(),
+					blockCacheHits.sum(), blockCacheMisses.sum());
+			search.finish(opt);
+			search = null;
+		}
+		if (pmcArena != null) {
+			pmcArena.free();
+		}
+	}
+
+	/**
+	 * Returns a fresh PMC for the given separator, sharing the blocks
+	 * of the PMC made earlier for the same separator if any.
+	 */
+	private PMC newPMC(XBitSet separator) {
+		int id = sets.intern(separator);
+		PMC pmc = pmcPool.get(id);
+		if (pmc == null) {
+			pmc = new PMC(id);
+			pmcPool.put(id, pmc);
+		}
+		return new PMC(pmc);
+	}
+
+	/**
+	 * Returns the TBlock with the separator of the given handle and the
+	 * given open block, reusing the one made earlier if any.
+	 */
+	private TBlock newTBlock(int id, Block open) {
+		TBlock tBlock = tBlockPool.get(id);
+		if (tBlock == null || tBlock.openId != open.id) {
+			tBlock = new TBlock(id, open);
+			tBlockPool.put(id, tBlock);
+		}
+		return tBlock;
 	}
 
 	private final Block getBlock(XBitSet component) {
-		Block block = blockMap.get(component);
+		int id = sets.find(component);
+		Block block = blockMap.get(id);
 		if (block == null) {
-			block = new Block(component);
-			blockMap.put(component, block);
+			if (id < 0) {
+				id = sets.intern(component.clone());
+			}
+			block = new Block(id);
+			Block existing = blockMap.putIfAbsent(id, block);
+			if (existing != null) {
+				return existing;
+			}
 		}
 		return block;
 //		return new Block(component);
@@ -164,23 +1022,45 @@ public class Decomposer {
 		return result;
 	}
 	
+	/**
+	 * Returns the blocks of the given PMC, taking them from the block
+	 * cache if {@code isPMC} has left them there.
+	 */
+	private ArrayList<Block> getPMCBlocks(XBitSet separator) {
+		Block[] blocks = blockCache == null ? null : blockCache.take(separator);
+		if (blocks != null) {
+			if (stats != null) {
+				blockCacheHits.increment();
+			}
+			return new ArrayList<>(Arrays.asList(blocks));
+		}
+		if (stats != null) {
+			blockCacheMisses.increment();
+		}
+		return getBlocks(separator);
+	}
+
 	ArrayList<Block> getBlocks(XBitSet separator) {
 		//		int sepSize = separator.cardinality();
 		ArrayList<Block> result = new ArrayList<Block>();
 		XBitSet rest = g.all.subtract(separator);
+		// work sets: the component is copied only if its block is new
+		XBitSet c = new XBitSet(g.n);
+		XBitSet toBeScanned = new XBitSet(g.n);
+		XBitSet save = new XBitSet(g.n);
 		for (int v = rest.nextSetBit(0); v >= 0; 
 				v = rest.nextSetBit(v + 1)) {
-			XBitSet c = g.neighborSet[v].subtract(separator);
-			XBitSet toBeScanned = (XBitSet) c.clone();
+			c.setDifference(g.neighborSet[v], separator);
+			toBeScanned.copyFrom(c);
 			c.set(v);
 			while (!toBeScanned.isEmpty()) {
-				XBitSet save = (XBitSet) c.clone();
+				save.copyFrom(c);
 				for (int w = toBeScanned.nextSetBit(0); w >= 0;
 						w = toBeScanned.nextSetBit(w + 1)) {
 					c.or(g.neighborSet[w]);
 				}
 				c.andNot(separator);
-				toBeScanned = c.subtract(save);
+				toBeScanned.setDifference(c, save);
 			}
 
 			Block block = getBlock(c); 
@@ -190,22 +1070,72 @@ public class Decomposer {
 		return result;
 	}
 	
+	/**
+	 * A map from separators to their blocks holding at most the given
+	 * number of entries, the least recently used one being evicted first.
+	 * An entry is taken out when it is used.
+	 */
+	@SuppressWarnings("serial")
+	class BlockCache extends LinkedHashMap<XBitSet, Block[]> {
+		final int capacity;
+
+		BlockCache(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<XBitSet, Block[]> eldest) {
+			return size() > capacity;
+		}
+
+		synchronized Block[] take(XBitSet separator) {
+			return remove(separator);
+		}
+
+		synchronized void store(XBitSet separator, Block[] blocks) {
+			put(separator, blocks);
+		}
+	}
+
 	public boolean isPMC(XBitSet separator) {
-//		Boolean isPMC = pmcCache.get(separator);
-//		if (isPMC != null) {
-//			return isPMC;
-//		}
+		if (pmcArena != null) {
+			int cached = pmcArena.get(separator);
+			if (cached >= 0) {
+				if (stats != null) {
+					pmcCacheHits.increment();
+				}
+				return cached == 1;
+			}
+			boolean isPMC = testPMC(separator);
+			pmcArena.put(separator, isPMC ? 1 : 0);
+			return isPMC;
+		}
+		Boolean isPMC = pmcCache.get(separator);
+		if (isPMC == null) {
+			isPMC = testPMC(separator);
+			pmcCache.put(separator, isPMC);
+		} else if (stats != null) {
+			pmcCacheHits.increment();
+		}
+		return isPMC;
+	}
+
+	private boolean testPMC(XBitSet separator) {
+		if (stats != null) {
+			pmcCacheMisses.increment();
+		}
 		ArrayList<Block> blockList = getBlocks(separator);
 		int nsep = separator.cardinality();
 		for (Block block: blockList) {
 			if (nsep == block.separator.cardinality()) {
 				// separator has a full component
-//				pmcCache.put(separator, false);
 				return false;
 			}
 		}
+		XBitSet rest = new XBitSet(g.n);
 		for (int v = separator.nextSetBit(0); v >= 0; v = separator.nextSetBit(v + 1)) {	
-			XBitSet rest = separator.subtract( g.neighborSet[v] ); 
+			rest.setDifference( separator, g.neighborSet[v] ); 
 			for (int w = rest.nextSetBit(v + 1); w >= 0; w = rest.nextSetBit(w + 1)) {
 				boolean covered = false;
 				for (Block b: blockList) {
@@ -215,51 +1145,75 @@ public class Decomposer {
 					}
 				}
 				if (!covered) {
-//					pmcCache.put(separator, false);
 					return false;
 				}
 			}
 		}
-//		pmcCache.put(separator, true);
+		// the blocks of a PMC are soon needed again, by its constructor
+		if (blockCache != null) {
+			blockCache.store(separator, blockList.toArray(new Block[blockList.size()]));
+		}
 		return true;
 	}
 	
 	class Block implements Comparable<Block> {
 		XBitSet component;
 		XBitSet separator;
-		XBitSet outbound;
 
-		Block(XBitSet component) {
-			this.component = component;
-			this.separator = g.neighborSet(component);
+		/**
+		 * the handles of the component and the separator
+		 */
+		int id;
+		int separatorId;
+
+		/**
+		 * whether the separator has another full component, which makes it
+		 * a minimal separator, and whether this block is the outbound one
+		 * of the two, the one whose component does not hold the smallest vertex
+		 */
+		boolean minimal;
+		boolean outbound;
+
+		/**
+		 * lower bound on the cost of the block, computed on demand;
+		 * -1 until then
+		 */
+		int costBound = -1;
+
+		Block(int id) {
+			this.id = id;
+			this.component = sets.get(id);
+			separatorId = sets.intern(g.neighborSet(component));
+			separator = sets.get(separatorId);
 
 			XBitSet rest = g.all.subtract(component);
 			rest.andNot(separator);
 
 			int minCompo = component.nextSetBit(0);
 
+			XBitSet c = new XBitSet(g.n);
+			XBitSet toBeScanned = new XBitSet(g.n);
+			XBitSet save = new XBitSet(g.n);
+
 			// the scanning order ensures that the first full component
 			// encountered is the outbound one
 			for (int v = rest.nextSetBit(0); v >= 0; v = rest.nextSetBit(v + 1)) {
-				XBitSet c = (XBitSet) g.neighborSet[v].clone();
-				XBitSet toBeScanned = c.subtract(separator);
+				c.copyFrom(g.neighborSet[v]);
+				toBeScanned.setDifference(c, separator);
 				c.set(v);
 				while (!toBeScanned.isEmpty()) {
-					XBitSet save = (XBitSet) c.clone();
+					save.copyFrom(c);
 					for (int w = toBeScanned.nextSetBit(0); w >= 0; w = toBeScanned.nextSetBit(w + 1)) {
 						c.or(g.neighborSet[w]);
 					}
-					toBeScanned = c.subtract(save);
+					toBeScanned.setDifference(c, save);
 					toBeScanned.andNot(separator);
 				}
 				if (separator.isSubset(c)) {
 					// full block other than "component" found
-					if (v < minCompo) {
-						outbound = c.subtract(separator);
-					} else {
-						// v > minCompo
-						outbound = component;
-					}
+					minimal = true;
+					// outbound if v > minCompo
+					outbound = v > minCompo;
 					return;
 				}
 				rest.andNot(c);
@@ -267,11 +1221,11 @@ public class Decomposer {
 		}
 
 		boolean isOutbound() {
-			return outbound == component;
+			return outbound;
 		}
 
 		boolean ofMinimalSeparator() {
-			return outbound != null;
+			return minimal;
 		}
 
 		@Override
@@ -288,28 +1242,39 @@ public class Decomposer {
 		PMC pmc;
 		int cost;
 
-		MBlock(XBitSet inbound, XBitSet separator, XBitSet outbound, PMC pmc, int cost)
+		/**
+		 * the handle of the inbound component
+		 */
+		int id;
+
+		MBlock(int id, PMC pmc, int cost)
 		{
-			this.inbound = inbound;
-			this.separator = separator;
-			this.outbound = outbound;
+			this.id = id;
+			this.inbound = sets.get(id);
+			this.separator = pmc.outbound.separator;
+			this.outbound = pmc.outbound.component;
 			this.pmc = pmc;
 			this.cost = cost;
 		}
 
 		void process() {
 			makeSimpleTBlock();
-			tBlockSieve.collectSuperblocks(inbound, separator, new ArrayList<>()).forEach(tBlock -> tBlock.plugin( this ));
+			List<TBlock> superblocks = sieveCollect(this);
+			if (stats != null) {
+				sieveQueries.increment();
+				sieveMatches.add(superblocks.size());
+			}
+			superblocks.forEach(tBlock -> tBlock.plugin( this ));
 		}
 
 		void makeSimpleTBlock() {
 
-			TBlock tBlock = tBlockMap.get(separator); 
+			Block open = pmc.outbound;
+			TBlock tBlock = tBlockMap.get(open.separatorId); 
 			if (tBlock == null) {
-				tBlock = new TBlock(separator, outbound);
-				tBlockMap.put(separator, tBlock);
-				if (tBlock.relevant()) {
-					tBlockSieve.put(outbound, tBlock);
+				tBlock = newTBlock(open.separatorId, open);
+				if (tBlockMap.putIfAbsent(tBlock.id, tBlock) == null && tBlock.relevant()) {
+					sievePut(outbound, tBlock);
 					tBlock.crown();
 				}
 			}
@@ -321,9 +1286,17 @@ public class Decomposer {
 		XBitSet openComponent;
 		Block blocks[];
 
-		TBlock(XBitSet separator, XBitSet openComponent) {
-			this.separator = separator;
-			this.openComponent = openComponent;
+		/**
+		 * the handles of the separator and the open component
+		 */
+		int id;
+		int openId;
+
+		TBlock(int id, Block open) {
+			this.id = id;
+			this.separator = sets.get(id);
+			this.openId = open.id;
+			this.openComponent = open.component;
 			ArrayList<Block> blockList = getBlocks(separator.unionWith(openComponent));
 			blocks = new Block[blockList.size()];
 			blockList.toArray(blocks);
@@ -336,11 +1309,11 @@ public class Decomposer {
 			}
 			for (Block block: blocks) {
 				if (!block.isOutbound()) {
-					MBlock mBlock = mBlockMap.get(block.component);
+					MBlock mBlock = mBlockMap.get(block.id);
 					if (mBlock == null) {
 						// cost of the inbound block is at least the
 						// current target (otherwise it would already be optimal)
-						cost += targetCost;
+						cost += inboundCost(block);
 					} else {
 						cost += mBlock.cost;
 					}
@@ -385,12 +1358,12 @@ public class Decomposer {
 			}
 
 			if (fullBlock != null) {
-				TBlock tBlock = tBlockMap.get(newsep); 
+				int id = sets.intern(newsep);
+				TBlock tBlock = tBlockMap.get(id); 
 				if (tBlock == null) {
-					tBlock = new TBlock(newsep, fullBlock.component);
-					tBlockMap.put(newsep, tBlock);
-					if (tBlock.relevant()) {
-						tBlockSieve.put(fullBlock.component, tBlock);
+					tBlock = newTBlock(id, fullBlock);
+					if (tBlockMap.putIfAbsent(tBlock.id, tBlock) == null && tBlock.relevant()) {
+						sievePut(fullBlock.component, tBlock);
 						tBlock.crown();
 					}
 				}
@@ -399,8 +1372,8 @@ public class Decomposer {
 					return;
 				}
 
-				PMC pmc = new PMC(newsep);
-				pmcMap.put(newsep, pmc);
+				PMC pmc = newPMC(newsep);
+				pmcMap.put(pmc.id, pmc);
 				pmc.process();
 			}
 		}
@@ -422,7 +1395,7 @@ public class Decomposer {
 				if (isPMC( newsep ) == false) {
 					continue;
 				}
-				PMC pmc = new PMC(newsep);
+				PMC pmc = newPMC(newsep);
 				pmc.process();
 			} 
 		}
@@ -430,17 +1403,33 @@ public class Decomposer {
 
 	class PMC implements Comparable<PMC> {
 		XBitSet separator;
+
+		/**
+		 * the handle of the separator
+		 */
+		int id;
 		Block inbounds[];
 		Block outbound;
 		boolean ready;
 		int lowerBound;
 
-		PMC(XBitSet separator) {
-			this.separator = separator;
+		/**
+		 * A PMC in its initial state with the blocks of the given one.
+		 */
+		PMC(PMC pmc) {
+			this.id = pmc.id;
+			this.separator = pmc.separator;
+			this.inbounds = pmc.inbounds;
+			this.outbound = pmc.outbound;
+		}
+
+		PMC(int id) {
+			this.id = id;
+			this.separator = sets.get(id);
 			if (separator.isEmpty()) {
 				return;
 			}
-			ArrayList<Block> blockList = getBlocks(separator);
+			ArrayList<Block> blockList = getPMCBlocks(separator);
 
 			for (Block block: blockList) {
 				if (block.isOutbound() && (outbound == null || outbound.separator.isSubset(block.separator))){
@@ -471,10 +1460,10 @@ public class Decomposer {
 				}
 				ready = true;
 				for (Block block: inbounds) {
-					MBlock mBlock = mBlockMap.get(block.component);
+					MBlock mBlock = mBlockMap.get(block.id);
 					if (mBlock == null || mBlock.cost > targetCost) {
 						ready = false;
-						lowerBound += targetCost;
+						lowerBound += inboundCost(block);
 					} else {
 						lowerBound += mBlock.cost;
 					}
@@ -486,7 +1475,8 @@ public class Decomposer {
 			evaluate();
 			if (ready && lowerBound <= targetCost) {
 				endorse();
-			} else {
+			} else if (lowerBound <= tentativeUB) {
+				// above tentativeUB it could only make a block too costly to use
 				pmcQueue.add(this);
 			}
 		}
@@ -506,11 +1496,13 @@ public class Decomposer {
 		}
 
 		void endorse(XBitSet target, int cost) {
-			MBlock mBlock = mBlockMap.get( target );
+			int id = sets.intern( target );
+			MBlock mBlock = mBlockMap.get( id );
 			if (mBlock == null) {
-				mBlock = new MBlock( target, outbound.separator, outbound.component, this, cost);
-				mBlockMap.put(target, mBlock);
-				readyQueue.add( mBlock );
+				mBlock = new MBlock( id, this, cost);
+				if (mBlockMap.putIfAbsent(id, mBlock) == null) {
+					readyQueue.add( mBlock );
+				}
 			} 
 		}
 
@@ -526,7 +1518,7 @@ public class Decomposer {
 		int countFill() {
 			int fill = 0;
 			for (Block block: inbounds) {
-				MBlock mBlock = mBlockMap.get( block.component );
+				MBlock mBlock = mBlockMap.get( block.id );
 				if (mBlock != null) {
 					fill += mBlock.cost;
 				}
@@ -543,7 +1535,7 @@ public class Decomposer {
 			int j = td.addBag(toBag(separator));
 
 			for (Block block: inbounds) {
-				PMC subEndorser = mBlockMap.get(block.component).pmc;
+				PMC subEndorser = mBlockMap.get(block.id).pmc;
 				if (subEndorser == null) {
 					continue;
 				}
@@ -1,52 +1,276 @@
 package fillin.main;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Random;
-import java.util.TreeSet;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
 
 import tw.common.LabeledGraph;
 
+/**
+ * Reader for graphs in the PACE format.
+ * The input is tokenized directly on bytes, either from a memory-mapped
+ * file or from a direct buffer filled from a channel. Labels are interned
+ * into an int dictionary as they are scanned and edges are collected into
+ * a primitive array; a {@code String} is created only once per distinct
+ * label, when the graph is finally built.
+ */
 public class Instance {
-	
-	public static LabeledGraph read()
+
+	private static final int INITIAL_BUFFER_SIZE = 1 << 20;
+
+	public static LabeledGraph read() throws IOException
+	{
+		ByteBuffer buf = mapStandardInput();
+		if (buf == null) {
+			buf = readFully( Channels.newChannel( System.in ) );
+		}
+		return parse( buf );
+	}
+
+	public static LabeledGraph read(File file) throws IOException
+	{
+		try (RandomAccessFile raf = new RandomAccessFile( file, "r" );
+				FileChannel fc = raf.getChannel()) {
+			return parse( fc.map( FileChannel.MapMode.READ_ONLY, 0, fc.size() ) );
+		}
+	}
+
+	/**
+	 * Maps the standard input if it is redirected from a regular file.
+	 * @return the mapped buffer; {@code null} if the standard input
+	 * cannot be mapped (e.g. it is a pipe)
+	 */
+	private static ByteBuffer mapStandardInput()
 	{
-		TreeSet< String > labels = new TreeSet< String >();
-		List< String[] > lines = new LinkedList< String[] >();
-		BufferedReader br = new BufferedReader(new InputStreamReader(System.in));
-		String line;
 		try {
-			while ((line = br.readLine()) != null) {
-				line = line.trim();
-				if (line.startsWith( "#" ) || line.isEmpty()) {
-					continue; // line is either a comment or empty
-				}
-				
-				String[] token = line.split( " " );
-				if (token.length != 2) {
+			@SuppressWarnings( "resource" )
+			FileChannel fc = new FileInputStream( FileDescriptor.in ).getChannel();
+			long position = fc.position();
+			long size = fc.size() - position;
+			if (size <= 0 || size > Integer.MAX_VALUE) {
+				return null;
+			}
+			return fc.map( FileChannel.MapMode.READ_ONLY, position, size );
+		} catch (IOException | UnsupportedOperationException e) {
+			return null;
+		}
+	}
+
+	private static ByteBuffer readFully(ReadableByteChannel ch) throws IOException
+	{
+		ByteBuffer buf = ByteBuffer.allocateDirect( INITIAL_BUFFER_SIZE );
+		while (ch.read( buf ) >= 0) {
+			if (buf.hasRemaining() == false) {
+				ByteBuffer larger = ByteBuffer.allocateDirect( buf.capacity() * 2 );
+				buf.flip();
+				larger.put( buf );
+				buf = larger;
+			}
+		}
+		buf.flip();
+		return buf;
+	}
+
+	/**
+	 * Parses the edge list in the given buffer, from its position to its limit.
+	 * Lines are trimmed; empty lines and lines starting with '#' are ignored,
+	 * as are self-loops. Every other line must consist of exactly two labels
+	 * separated by a single space.
+	 */
+	static LabeledGraph parse(ByteBuffer buf)
+	{
+		LabelTable table = new LabelTable();
+		int[] edges = new int[ 1024 ];
+		int m = 0;
+
+		int pos = buf.position();
+		int limit = buf.limit();
+		while (pos < limit) {
+			int eol = pos;
+			while (eol < limit && buf.get( eol ) != '\n') {
+				eol++;
+			}
+			int s = pos;
+			int e = eol;
+			pos = eol + 1;
+
+			// trim
+			while (s < e && (buf.get( s ) & 0xff) <= ' ') {
+				s++;
+			}
+			while (e > s && (buf.get( e - 1 ) & 0xff) <= ' ') {
+				e--;
+			}
+			if (s == e || buf.get( s ) == '#') {
+				continue; // line is either a comment or empty
+			}
+
+			int sp = s;
+			while (sp < e && buf.get( sp ) != ' ') {
+				sp++;
+			}
+			if (sp == e || sp + 1 == e || buf.get( sp + 1 ) == ' ') {
+				throw new RuntimeException( "Input file is incorrect." );
+			}
+			for (int i = sp + 1; i < e; i++) {
+				if (buf.get( i ) == ' ') {
 					throw new RuntimeException( "Input file is incorrect." );
 				}
-				if (token[ 0 ].equals( token[ 1 ] )) {
-					continue; // self-loop
-				}
-				
-				labels.add( token[ 0 ] );
-				labels.add( token[ 1 ] );
-				lines.add( token );
-			}
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
-		
-		LabeledGraph g = new LabeledGraph( labels.toArray( new String[ labels.size() ] ) );
-		lines.forEach(l -> g.addEdgeBetween( l[ 0 ] , l[ 1 ]) );
+			}
+			if (equalBytes( buf, s, sp, sp + 1, e )) {
+				continue; // self-loop
+			}
+
+			if (m + 2 > edges.length) {
+				edges = Arrays.copyOf( edges, edges.length * 2 );
+			}
+			edges[ m++ ] = table.intern( buf, s, sp );
+			edges[ m++ ] = table.intern( buf, sp + 1, e );
+		}
+
+		// vertices are numbered in the order of their labels
+		String[] labels = table.toStrings();
+		Integer[] order = new Integer[ labels.length ];
+		for (int i = 0; i < order.length; i++) {
+			order[ i ] = i;
+		}
+		Arrays.sort( order, (a, b) -> labels[ a ].compareTo( labels[ b ] ) );
+		int[] rank = new int[ labels.length ];
+		String[] sorted = new String[ labels.length ];
+		for (int i = 0; i < order.length; i++) {
+			rank[ order[ i ] ] = i;
+			sorted[ i ] = labels[ order[ i ] ];
+		}
+
+		for (int i = 0; i < m; i++) {
+			edges[ i ] = rank[ edges[ i ] ];
+		}
+		LabeledGraph g = new LabeledGraph( sorted );
+		g.setEdges( edges, m / 2 );
 		return g;
 	}
-	
+
+	private static boolean equalBytes(ByteBuffer buf, int s1, int e1, int s2, int e2)
+	{
+		if (e1 - s1 != e2 - s2) {
+			return false;
+		}
+		for (int i = 0; i < e1 - s1; i++) {
+			if (buf.get( s1 + i ) != buf.get( s2 + i )) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Open-addressing dictionary from label bytes to consecutive int ids.
+	 * The bytes of each distinct label are copied once into a shared pool.
+	 */
+	private static final class LabelTable {
+		private byte[] pool = new byte[ 4096 ];
+		private int poolSize;
+		private int[] offset = new int[ 256 ];
+		private int[] length = new int[ 256 ];
+		private int[] hash = new int[ 256 ];
+		private int size;
+		private int[] slots = new int[ 512 ];
+
+		LabelTable()
+		{
+			Arrays.fill( slots, -1 );
+		}
+
+		int intern(ByteBuffer buf, int s, int e)
+		{
+			int h = 1;
+			for (int i = s; i < e; i++) {
+				h = 31 * h + buf.get( i );
+			}
+			h ^= h >>> 16;
+
+			int mask = slots.length - 1;
+			for (int i = h & mask; ; i = (i + 1) & mask) {
+				int id = slots[ i ];
+				if (id < 0) {
+					return add( buf, s, e, h, i );
+				}
+				if (hash[ id ] == h && matches( id, buf, s, e )) {
+					return id;
+				}
+			}
+		}
+
+		private boolean matches(int id, ByteBuffer buf, int s, int e)
+		{
+			if (length[ id ] != e - s) {
+				return false;
+			}
+			int o = offset[ id ];
+			for (int i = s; i < e; i++) {
+				if (pool[ o++ ] != buf.get( i )) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private int add(ByteBuffer buf, int s, int e, int h, int slot)
+		{
+			int len = e - s;
+			if (poolSize + len > pool.length) {
+				pool = Arrays.copyOf( pool, Math.max( pool.length * 2, poolSize + len ) );
+			}
+			for (int i = s; i < e; i++) {
+				pool[ poolSize + i - s ] = buf.get( i );
+			}
+			if (size == offset.length) {
+				offset = Arrays.copyOf( offset, size * 2 );
+				length = Arrays.copyOf( length, size * 2 );
+				hash = Arrays.copyOf( hash, size * 2 );
+			}
+			int id = size++;
+			offset[ id ] = poolSize;
+			length[ id ] = len;
+			hash[ id ] = h;
+			poolSize += len;
+			slots[ slot ] = id;
+			if (size * 2 > slots.length) {
+				rehash();
+			}
+			return id;
+		}
+
+		private void rehash()
+		{
+			slots = new int[ slots.length * 2 ];
+			Arrays.fill( slots, -1 );
+			int mask = slots.length - 1;
+			for (int id = 0; id < size; id++) {
+				int i = hash[ id ] & mask;
+				while (slots[ i ] >= 0) {
+					i = (i + 1) & mask;
+				}
+				slots[ i ] = id;
+			}
+		}
+
+		String[] toStrings()
+		{
+			Charset cs = Charset.defaultCharset();
+			String[] labels = new String[ size ];
+			for (int id = 0; id < size; id++) {
+				labels[ id ] = new String( pool, offset[ id ], length[ id ], cs );
+			}
+			return labels;
+		}
+	}
 }
@@ -1,32 +1,192 @@
 package fillin.main;
 
-import java.io.FileNotFoundException;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashSet;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
 
+import tw.common.EdgeSet;
 import tw.common.LabeledGraph;
-import tw.common.Pair;
 import tw.common.TreeDecomposition;
 import tw.common.XBitSet;
 
 public class Solver {
 
-	HashSet< Pair<String, String> > fillEdges;
-	HashSet< Pair<String, String> > safeFill;
+	EdgeSet fillEdges;
+	EdgeSet safeFill;
 	private static final int DIRECT_SOLVING_THRESHOLD = 32;
 	private static final int SIZE_DECREMENT = 8;
+	static final int DEFAULT_CACHE_SIZE = 64 << 20;
 
+	/**
+	 * pool in which independent pieces are solved as separate tasks;
+	 * {@code null} if the pieces are solved sequentially
+	 */
+	private ForkJoinPool pool;
+
+	/**
+	 * token that stops the exact search in the anytime mode;
+	 * {@code null} if the solver always runs to optimality
+	 */
+	private CancellationToken cancel;
+
+	/**
+	 * cache of optimal fill-ins of atoms; {@code null} if not used
+	 */
+	private AtomCache atomCache;
+
+	/**
+	 * statistics of the run; {@code null} if not collected
+	 */
+	private Stats stats;
+
+	/**
+	 * whether the exact searches keep their PMC tests off the heap
+	 */
+	private boolean offHeap;
+
+	/**
+	 * the number of tentative upper bounds tried at the same time
+	 * by the exact searches without a given upper bound
+	 */
+	private int speculation = 1;
+
+	/**
+	 * the directory of the checkpoints of the exact searches on atoms;
+	 * {@code null} if none are written
+	 */
+	private File checkpointDir;
+	private long checkpointInterval;
+	private boolean resume;
+
+	/**
+	 * the order in which the vertices of each atom are renumbered before
+	 * it is solved; {@code null} to keep the order of the labels
+	 */
+	private VertexOrder vertexOrder;
+
+	/**
+	 * whether the exact searches charge the unsolved blocks their lower bounds
+	 */
+	private boolean blockBounds;
 	
 	public int getOpt() {
 		return fillEdges.size();
 	}
 	
 	public Solver() {
-		fillEdges = new HashSet<>();
-		safeFill = new HashSet<>();
+		fillEdges = new EdgeSet();
+		safeFill = new EdgeSet();
+	}
+
+	/**
+	 * Creates a solver that solves independent components, biconnected
+	 * blocks, safe-separator pieces and clique-separator atoms in parallel,
+	 * as well as the PMCs and MBlocks of each cost level of an exact search.
+	 * @param nThreads the number of worker threads; if 1 or less,
+	 * everything is solved sequentially in the calling thread
+	 */
+	public Solver(int nThreads) {
+		this();
+		if (nThreads > 1) {
+			pool = new ForkJoinPool( nThreads );
+		}
+	}
+
+	/**
+	 * Turns on the anytime mode. Once the given token is cancelled, atoms
+	 * not yet solved to optimality are filled by the best heuristic
+	 * triangulation known for them, so that {@code solve} still returns
+	 * a valid (possibly non-minimum) fill-in. The lower bound, the fill
+	 * and the status of each atom are reported on the standard error.
+	 */
+	public void setCancellationToken(CancellationToken cancel) {
+		this.cancel = cancel;
+	}
+
+	/**
+	 * Makes the solver look up each atom in the given cache before solving it,
+	 * and store the optimal fill-ins it finds there.
+	 */
+	public void setAtomCache(AtomCache atomCache) {
+		this.atomCache = atomCache;
+	}
+
+	/**
+	 * Makes the solver record phase times, atoms and the search space
+	 * of each exact search in the given statistics.
+	 */
+	public void setStats(Stats stats) {
+		this.stats = stats;
+	}
+
+	/**
+	 * Makes the exact searches keep the separators they test off the heap.
+	 * @see Decomposer#setOffHeap
+	 */
+	public void setOffHeap(boolean offHeap) {
+		this.offHeap = offHeap;
+	}
+
+	/**
+	 * Makes the exact searches without a given upper bound try the given
+	 * number of tentative upper bounds at the same time.
+	 * @see Decomposer#setSpeculation
+	 */
+	public void setSpeculation(int nRuns) {
+		this.speculation = nRuns;
+	}
+
+	/**
+	 * Makes the exact searches on atoms write checkpoints into the given directory
+	 * and, if {@code resume} is set, resume from the checkpoints found there.
+	 * @param interval the time in milliseconds between two checkpoints of a search
+	 * @see Decomposer#setCheckpoint
+	 */
+	public void setCheckpoint(File dir, long interval, boolean resume) {
+		this.checkpointDir = dir;
+		this.checkpointInterval = interval;
+		this.resume = resume;
+	}
+
+	/**
+	 * Makes the solver renumber the vertices of each atom in the given
+	 * order before solving it; {@code null} keeps the order of the labels.
+	 */
+	public void setVertexOrder(VertexOrder vertexOrder) {
+		this.vertexOrder = vertexOrder;
+	}
+
+	/**
+	 * Makes the exact searches charge the blocks not solved yet lower
+	 * bounds on their costs instead of the target cost.
+	 * @see Decomposer#setBlockBounds
+	 */
+	public void setBlockBounds(boolean blockBounds) {
+		this.blockBounds = blockBounds;
+	}
+
+	private long startTimer()
+	{
+		return stats != null ? System.nanoTime() : 0;
+	}
+
+	private void stopTimer(Stats.Phase phase, long start)
+	{
+		if (stats != null) {
+			stats.addTime( phase, start );
+		}
 	}
 
 	public void solve(LabeledGraph g)
@@ -34,10 +194,61 @@ public class Solver {
 		if (g.n <= 3) {
 			return;
 		}
-		LabeledGraph[] graphs = toGraphs( g, g.getComponents( new XBitSet( g.n ) ) );
-		Arrays.stream( graphs ).forEach(sg -> solveConnected( sg ));
+		if (pool == null) {
+			solveGraph( g );
+		} else {
+			pool.invoke( ForkJoinTask.adapt( () -> solveGraph( g ) ) );
+		}
 		fillEdges.addAll( safeFill );
 	}
+
+	public void shutdown()
+	{
+		if (pool != null) {
+			pool.shutdown();
+		}
+	}
+
+	private void solveGraph(LabeledGraph g)
+	{
+		long start = startTimer();
+		ArrayList< XBitSet > components = g.getComponents( new XBitSet( g.n ) );
+		stopTimer( Stats.Phase.COMPONENTS, start );
+		LabeledGraph[] graphs = toGraphs( g, components );
+		solveAll( graphs, sg -> solveConnected( sg ) );
+	}
+
+	/**
+	 * Solves each of the given graphs, which must be independent of each other.
+	 * In the parallel mode each graph becomes its own fork-join task and
+	 * this method returns when all of them are done.
+	 */
+	private void solveAll(LabeledGraph[] graphs, Consumer< LabeledGraph > method)
+	{
+		if (pool == null || graphs.length == 1) {
+			Arrays.stream( graphs ).forEach( method );
+			return;
+		}
+		ArrayList< ForkJoinTask< ? > > tasks = new ArrayList<>( graphs.length );
+		for (LabeledGraph sg: graphs) {
+			tasks.add( ForkJoinTask.adapt( () -> method.accept( sg ) ) );
+		}
+		ForkJoinTask.invokeAll( tasks );
+	}
+
+	/**
+	 * Adds fill edges between vertices of the given graph, translating
+	 * them into edges between vertex ids of the input graph.
+	 */
+	private void addFill(LabeledGraph g, EdgeSet fill)
+	{
+		long[] edges = fill.toArray();
+		synchronized (fillEdges) {
+			for (long e: edges) {
+				fillEdges.add( g.getId( EdgeSet.first( e ) ), g.getId( EdgeSet.second( e ) ) );
+			}
+		}
+	}
 	
 	public void solveConnected(LabeledGraph g)
 	{
@@ -45,13 +256,18 @@ public class Solver {
 			return;
 		}
 		
-		LabeledGraph[] graphs = toGraphs( g, g.decomposeByCutPoints() );
-		Arrays.stream( graphs ).forEach(sg -> solveBiconnected( sg ));
+		long start = startTimer();
+		ArrayList< XBitSet > blocks = g.decomposeByCutPoints();
+		stopTimer( Stats.Phase.CUT_POINTS, start );
+		LabeledGraph[] graphs = toGraphs( g, blocks );
+		solveAll( graphs, sg -> solveBiconnected( sg ) );
 	}
 	
 	public void solveBiconnected(LabeledGraph g)
 	{
+		long start = startTimer();
 		XBitSet separator = safeSeparator( g );
+		stopTimer( Stats.Phase.SAFE_SEPARATOR, start );
 		if (separator == null) {
 			solveComponent( g );
 		} else {
@@ -61,8 +277,8 @@ public class Solver {
 			} else {
 				for (XBitSet comp: components) {
 					comp.or( separator );
-					solveBiconnected( toGraph( g, comp ) );
 				}
+				solveAll( toGraphs( g, components ), sg -> solveBiconnected( sg ) );
 			}
 		}
 	}
@@ -72,44 +288,298 @@ public class Solver {
 		if (g.n <= 3) {
 			return;
 		}
+		long start = startTimer();
 		ArrayList< XBitSet > components = g.decomposeByCliqueSeparators();
+		stopTimer( Stats.Phase.CLIQUE_SEPARATORS, start );
 		
 		if (components.size() == 1) {
 			solveReduced( g );
 		} else {
 			LabeledGraph[] graphs = toGraphs( g, components );
-			for (LabeledGraph sg: graphs) {
-				solveReduced( sg );
-			}
+			solveAll( graphs, sg -> solveReduced( sg ) );
 		}
 	}
 	
 	public void solveReduced(LabeledGraph g)
 	{
-		if (g.isChordal()) {
+		long start = startTimer();
+		boolean chordal = g.isChordal();
+		stopTimer( Stats.Phase.CHORDAL, start );
+		if (chordal) {
 			return;
 		}
 
-		int ub = getUpperbound( g );
+		if (atomCache == null) {
+			addAtomFill( g, solveAtom( g ).fill, start, false );
+			return;
+		}
+
+		CanonicalForm cf = new CanonicalForm( g );
+		CompletableFuture< int[] > known = atomCache.lookupOrReserve( cf.key );
+		if (known != null) {
+			int[] pairs = known.join();
+			if (pairs != null) {
+				addAtomFill( g, cf.fromCanonical( pairs ), start, true );
+			} else {
+				addAtomFill( g, solveAtom( g ).fill, start, false );
+			}
+			return;
+		}
+		int[] pairs = null;
+		try {
+			AtomFill atom = solveAtom( g );
+			if (atom.optimal) {
+				pairs = cf.toCanonical( atom.fill );
+			}
+			addAtomFill( g, atom.fill, start, false );
+		} finally {
+			atomCache.complete( cf.key, pairs );
+		}
+	}
+
+	private void addAtomFill(LabeledGraph g, EdgeSet fill, long start, boolean cached)
+	{
+		addFill( g, fill );
+		if (stats != null) {
+			stats.addAtom( g.n, g.edges(), fill.size(), System.nanoTime() - start, cached );
+		}
+	}
+
+	/**
+	 * Solves an atom. In the anytime mode, an atom whose exact search is
+	 * cancelled gets the best triangulation known for it.
+	 * @return the fill edges between vertices of the atom
+	 */
+	private AtomFill solveAtom(LabeledGraph g)
+	{
+		if (vertexOrder == null) {
+			return solveOrderedAtom( g );
+		}
+		int[] order = vertexOrder.order( g );
+		AtomFill atom = solveOrderedAtom( VertexOrder.renumber( g, order ) );
+		return new AtomFill( VertexOrder.restore( atom.fill, order ), atom.optimal );
+	}
+
+	/**
+	 * Solves an atom in the order its vertices are numbered. The anytime
+	 * mode costs nothing until the token is cancelled: the exact search
+	 * runs as it does without it, and the fallback is computed only if it
+	 * is cut short.
+	 * @return the fill edges between vertices of the atom
+	 */
+	private AtomFill solveOrderedAtom(LabeledGraph g)
+	{
+		long start = startTimer();
+		UpperBound ub = getUpperbound( g, true );
+		stopTimer( Stats.Phase.UPPERBOUND, start );
+		Decomposer dec = null;
+		EdgeSet exact = null;
+		if (ub != null) {
+			start = startTimer();
+			if (ub.optimal) {
+				exact = ub.fill;
+			} else {
+				dec = newDecomposer( g, true );
+				exact = solveFrom( g, ub, dec );
+			}
+			stopTimer( Stats.Phase.DECOMPOSE, start );
+		}
+		if (exact == null) {
+			// only in the anytime mode, once the token has been cancelled
+			return solveCancelledAtom( g, ub, dec );
+		}
+		EdgeSet fill = fromIds( g, exact );
+		if (cancel != null) {
+			reportAtom( g, fill.size(), fill, true );
+		}
+		return new AtomFill( fill, true );
+	}
+
+	/**
+	 * Fills an atom whose exact search has been cancelled in the anytime
+	 * mode, with the better of the triangulation found by
+	 * {@code getUpperbound}, if any, and a greedy one. It is optimal if
+	 * it meets the lower bound, or the bound proven by the levels the
+	 * search has completed.
+	 * @param ub the triangulation found; {@code null} if none
+	 * @param dec the decomposer of the exact search; {@code null} if
+	 * it has not started
+	 */
+	private AtomFill solveCancelledAtom(LabeledGraph g, UpperBound ub, Decomposer dec)
+	{
+		Bounds bounds = new Bounds( g );
+		EdgeSet fill = bounds.minFillTriangulation();
+		if (ub != null && ub.fill.size() < fill.size()) {
+			fill = fromIds( g, ub.fill );
+		}
+		int lb;
+		if (dec == null) {
+			lb = bounds.lowerbound();
+		} else {
+			lb = Math.max( dec.getLowerbound(), dec.getPartialResult().lowerbound );
+		}
+		boolean optimal = fill.size() <= lb;
+		reportAtom( g, lb, fill, optimal );
+		return new AtomFill( fill, optimal );
+	}
+
+	/**
+	 * Reports the lower bound, the fill and the status of an atom
+	 * in the anytime mode.
+	 */
+	private void reportAtom(LabeledGraph g, int lb, EdgeSet fill, boolean optimal)
+	{
+		synchronized (System.err) {
+			System.err.println( "c atom n " + g.n + " lb " + lb + " fill " + fill.size() + 
+					(optimal ? " optimal" : " heuristic") );
+		}
+	}
+
+	/**
+	 * The fill-in of an atom, between its vertices.
+	 */
+	private static class AtomFill {
+		final EdgeSet fill;
+
+		/**
+		 * whether the fill-in is known to be minimum
+		 */
+		final boolean optimal;
+
+		AtomFill(EdgeSet fill, boolean optimal) {
+			this.fill = fill;
+			this.optimal = optimal;
+		}
+	}
+
+	/**
+	 * Makes the decomposer of an exact search. Only the search on a whole
+	 * atom writes checkpoints: the searches nested in {@code getUpperbound}
+	 * are short, and resuming the atom search does not run them again.
+	 * @param atom whether {@code g} is the atom being solved
+	 */
+	private Decomposer newDecomposer(LabeledGraph g, boolean atom)
+	{
 		Decomposer dec = new Decomposer( g );
-		TreeDecomposition td = dec.decompose( ub );
-		fillEdges.addAll( td.computeFill( g ) );
+		dec.setCancellationToken( cancel );
+		dec.setStats( stats );
+		if (offHeap) {
+			dec.setOffHeap( true );
+		}
+		if (blockBounds) {
+			dec.setBlockBounds( true );
+		}
+		dec.setSpeculation( speculation );
+		if (atom && checkpointDir != null) {
+			dec.setCheckpoint( checkpointDir, checkpointInterval, resume );
+		}
+		if (pool != null) {
+			dec.setPool( pool );
+		}
+		return dec;
 	}
 	
-	private int getUpperbound(LabeledGraph g) {
+	/**
+	 * A triangulation of a graph, given by its fill edges between the ids
+	 * of the vertices, so that it stays valid for any graph made from the
+	 * same vertices.
+	 */
+	private static class UpperBound {
+		final EdgeSet fill;
+
+		/**
+		 * whether the fill-in is known to be minimum
+		 */
+		final boolean optimal;
+
+		UpperBound(EdgeSet fill, boolean optimal) {
+			this.fill = fill;
+			this.optimal = optimal;
+		}
+	}
+
+	private static EdgeSet toIds(LabeledGraph g, EdgeSet fill) {
+		EdgeSet result = new EdgeSet();
+		for (long e: fill.toArray()) {
+			result.add(g.getId(EdgeSet.first(e)), g.getId(EdgeSet.second(e)));
+		}
+		return result;
+	}
+
+	private static EdgeSet fromIds(LabeledGraph g, EdgeSet fill) {
+		int maxId = 0;
+		for (int v = 0; v < g.n; v++) {
+			maxId = Math.max(maxId, g.getId(v));
+		}
+		int[] vertex = new int[maxId + 1];
+		for (int v = 0; v < g.n; v++) {
+			vertex[g.getId(v)] = v;
+		}
+		EdgeSet result = new EdgeSet();
+		for (long e: fill.toArray()) {
+			result.add(vertex[EdgeSet.first(e)], vertex[EdgeSet.second(e)]);
+		}
+		return result;
+	}
+
+	/**
+	 * Computes a minimum fill-in of the given graph, starting from the
+	 * given triangulation: it is returned as it is if it is known to be
+	 * optimal or meets the lower bound, and otherwise its size bounds
+	 * the exact search.
+	 * @return the fill edges between ids; {@code null} if the search
+	 * has been cancelled
+	 */
+	private EdgeSet solveFrom(LabeledGraph g, UpperBound ub) {
+		if (ub.optimal) {
+			return ub.fill;
+		}
+		return solveFrom(g, ub, newDecomposer(g, false));
+	}
+
+	/**
+	 * Computes a minimum fill-in of the given graph with the given
+	 * decomposer, starting from a triangulation not known to be optimal.
+	 * If the search is cancelled, the decomposer tells what it has proven.
+	 */
+	private EdgeSet solveFrom(LabeledGraph g, UpperBound ub, Decomposer dec) {
+		if (dec.getLowerbound() >= ub.fill.size()) {
+			return ub.fill;
+		}
+		TreeDecomposition td = dec.decompose(ub.fill.size());
+		if (td == null) {
+			return null;
+		}
+		return toIds(g, td.computeFill(g));
+	}
+
+	/**
+	 * Computes a triangulation of the given atom, by splitting it at
+	 * separators made cliques until the rest is small enough to be
+	 * solved exactly.
+	 * @param atom whether {@code g} is the atom being solved, and not
+	 * a part of it
+	 * @return the triangulation; {@code null} if the computation has been cancelled
+	 */
+	private UpperBound getUpperbound(LabeledGraph g, boolean atom) {
 		if (g.n <= DIRECT_SOLVING_THRESHOLD) {
-			return solveComponentDirect(g);
+			return solveComponentDirect(g, atom);
 		}
 
-		int deltaUB = 0;
+		EdgeSet fill = new EdgeSet();
 		LabeledGraph h = g;
 		while (h.n > g.n - SIZE_DECREMENT) {
 			XBitSet separator = bestSeparator(h);
 			if (separator == null) {
 				break;
 			}
-			int nfill = h.countFill(separator);
-			deltaUB += nfill;
+			for (int u = separator.nextSetBit(0); u >= 0; u = separator.nextSetBit(u + 1)) {
+				for (int v = separator.nextSetBit(u + 1); v >= 0; v = separator.nextSetBit(v + 1)) {
+					if (!h.neighborSet[u].get(v)) {
+						fill.add(h.getId(u), h.getId(v));
+					}
+				}
+			}
 
 			ArrayList<XBitSet> components = h.getComponents(separator);
 
@@ -120,48 +590,72 @@ public class Solver {
 			for (int i = 0; i < nc; i++) {
 				XBitSet compo = components.get(i).unionWith(separator);
 				int nv = compo.cardinality();
-				String[] labelArray = new String[nv];
+				int[] idArray = new int[nv];
 				int k = 0;
-				int[] conv = new int[g.n];
-				for (int v = 0; v < g.n; v++) {
+				int[] conv = new int[h.n];
+				for (int v = 0; v < h.n; v++) {
 					if (compo.get(v)) {
 						conv[v] = k;
-						labelArray[k++] = g.getLabel(v);
+						idArray[k++] = h.getId(v);
 					}
 				}
-				LabeledGraph h1 = new LabeledGraph(labelArray);
-				for (int u = compo.nextSetBit(0); u >= 0; u = compo.nextSetBit(u + 1)) {
-					for (int v = compo.nextSetBit(u + 1); v >= 0; v = compo.nextSetBit(v + 1)) {
-						if (h.areAdjacent(u, v) || separator.get(u) && separator.get(v)) {
-							h1.addEdge(conv[u], conv[v]);
-						}
+				LabeledGraph h1 = new LabeledGraph(h, idArray);
+				// the separator is made a clique
+				int[] edges = h.inducedEdges(compo, conv);
+				int m = edges.length / 2;
+				int ns = separator.cardinality();
+				edges = Arrays.copyOf(edges, edges.length + ns * (ns - 1));
+				for (int u = separator.nextSetBit(0); u >= 0; u = separator.nextSetBit(u + 1)) {
+					for (int v = separator.nextSetBit(u + 1); v >= 0; v = separator.nextSetBit(v + 1)) {
+						edges[2 * m] = conv[u];
+						edges[2 * m + 1] = conv[v];
+						m++;
 					}
 				}
+				h1.setEdges(edges, m);
 				h1 = toGraph(h1, h1.all);
 				if (i < nc - 1) {
-					deltaUB += solveComponentDirect(h1);
+					UpperBound piece = solveComponentDirect(h1, false);
+					if (piece == null) {
+						return null;
+					}
+					fill.addAll(piece.fill);
 				} else {
 					h = h1;
 				}
 			}
 		}
 		if (h == g) {
-			return solveComponentDirect(g);
+			return solveComponentDirect(g, atom);
+		}
+		UpperBound ub = getUpperbound(h, false);
+		if (ub == null) {
+			return null;
+		}
+		EdgeSet rest = solveFrom(h, ub);
+		if (rest == null) {
+			return null;
 		}
-		int ub = getUpperbound(h);
-		Decomposer dec = new Decomposer(h);
-		dec.decompose(ub);
-		return deltaUB + dec.getOpt();
+		fill.addAll(rest);
+		return new UpperBound(fill, false);
 	}
 	
-	private int solveComponentDirect(LabeledGraph g) {
+	/**
+	 * Solves the given graph exactly.
+	 * @param atom whether {@code g} is the atom being solved
+	 * @return its minimum fill-in; {@code null} if the search has been cancelled
+	 */
+	private UpperBound solveComponentDirect(LabeledGraph g, boolean atom) {
 		if (g.isChordal()) {
-			return 0;
+			return new UpperBound(new EdgeSet(), true);
 		}
 
-		Decomposer dec = new Decomposer(g);
-		dec.decompose(-1);
-		return dec.getOpt();
+		Decomposer dec = newDecomposer(g, atom);
+		TreeDecomposition td = dec.decompose(-1);
+		if (td == null) {
+			return null;
+		}
+		return new UpperBound(toIds(g, td.computeFill(g)), true);
 	}
 	
 	XBitSet bestSeparator(LabeledGraph g) {
@@ -250,7 +744,7 @@ public class Solver {
 	private boolean isSafe(LabeledGraph g, XBitSet A, int b)
 	{
 		XBitSet separator = g.neighborSet( A );
-		XBitSet R = (XBitSet) separator.clone();
+		XBitSet R = separator.clone();
 		int missing = g.countFill( separator );
 		if (missing == 0) {
 			return true;
@@ -293,12 +787,8 @@ public class Solver {
 			for (int w = separator.nextSetBit( v + 1 ); w >= 0; w = separator.nextSetBit( w + 1 )) {
 				if (g.areAdjacent( v , w ) == false) {
 					g.addEdge(v, w);
-					String vl = g.getLabel( v );
-					String wl = g.getLabel( w );
-					if (vl.compareTo( wl ) < 0) { 
-						safeFill.add(new Pair< String, String >( vl, wl ));
-					} else {
-						safeFill.add(new Pair< String, String >( wl, vl ));
+					synchronized (safeFill) {
+						safeFill.add( g.getId( v ), g.getId( w ) );
 					}
 					missing--;
 					if (missing <= 0) {
@@ -310,7 +800,7 @@ public class Solver {
 	}
 	
 	private XBitSet reduceSimplicial(LabeledGraph g, XBitSet compo) {
-		XBitSet res = (XBitSet)compo.clone();
+		XBitSet res = compo.clone();
 		boolean hasSimplicial;
 		do {
 			hasSimplicial = false;
@@ -342,30 +832,170 @@ public class Solver {
 	{
 		comp = reduceSimplicial(g, comp);
 		int nv = comp.cardinality();
-		String[] labelArray = new String[ nv ];
+		int[] idArray = new int[ nv ];
 		int k = 0;
 		int[] conv = new int[ g.n ];
 		for (int v = 0; v < g.n; v++) {
 			if (comp.get(v)) {
 				conv[ v ] = k;
-				labelArray[ k++ ] = g.getLabel( v );
-			}
-		}
-		LabeledGraph graph  = new LabeledGraph( labelArray );
-		for (int u = comp.nextSetBit( 0 ); u >= 0; u = comp.nextSetBit( u + 1 )) {
-			for (int v = comp.nextSetBit( u + 1 ); v >= 0; v = comp.nextSetBit( v + 1 )) {
-				if (g.areAdjacent( u , v )) {
-					graph.addEdge( conv[ u ], conv[ v ] );
-				}
+				idArray[ k++ ] = g.getId( v );
 			}
 		}
+		LabeledGraph graph  = new LabeledGraph( g, idArray );
+		int[] edges = g.inducedEdges( comp, conv );
+		graph.setEdges( edges, edges.length / 2 );
 		return graph;
 	}
 	
-	public static void main(String[] args) throws FileNotFoundException {
-		Solver solver = new Solver();
-		LabeledGraph g = Instance.read();
-		solver.solve( g );
-		solver.fillEdges.forEach(e -> System.out.println(e.first + " " + e.second));
+	/**
+	 * Writes the fill edges found, one per line, as pairs of labels of the given input graph.
+	 */
+	public void writeFill(LabeledGraph g, PrintStream ps)
+	{
+		for (long e: fillEdges.toArray()) {
+			ps.print( g.labelOf( EdgeSet.first( e ) ) );
+			ps.print( ' ' );
+			ps.println( g.labelOf( EdgeSet.second( e ) ) );
+		}
+		ps.flush();
+	}
+	
+	private void writeStats(LabeledGraph g, int nThreads, AtomCache atomCache, String statsFile) throws IOException
+	{
+		stats.put( "n", g.n );
+		stats.put( "m", g.edges() );
+		stats.put( "threads", nThreads );
+		stats.put( "fill", getOpt() );
+		stats.put( "safeFill", safeFill.size() );
+		if (atomCache != null) {
+			stats.put( "cacheHits", atomCache.getHits() );
+			stats.put( "cacheMisses", atomCache.getMisses() );
+		}
+		if (statsFile.equals( "-" )) {
+			stats.write( System.err );
+		} else {
+			try (PrintStream ps = new PrintStream( new FileOutputStream( statsFile ) )) {
+				stats.write( ps );
+			}
+		}
+	}
+
+	/**
+	 * Usage: {@code Solver [-t threads] [-a] [-d seconds] [-c file [-cs megabytes]] [-s file] [-o] [-u runs] [-k directory [-ki seconds] [-r]] [-v bfs|rcm] [-b]},
+	 * reading the graph from the standard input.
+	 * {@code -a} turns on the anytime mode, in which SIGTERM makes the solver
+	 * output the best fill-in found so far; {@code -d} does the same
+	 * when the given number of seconds has passed.
+	 * {@code -c} keeps the optimal fill-ins of atoms in the given cache file,
+	 * of the size given by {@code -cs} when it is created.
+	 * {@code -s} writes the statistics of the run as JSON to the given file,
+	 * or to the standard error if the file is {@code -}.
+	 * {@code -o} keeps the separators tested by the exact searches off the heap.
+	 * {@code -u} makes the exact searches try the given number of tentative
+	 * upper bounds at the same time.
+	 * {@code -k} makes the exact searches on atoms write checkpoints into
+	 * the given directory every {@code -ki} seconds (60 by default), and {@code -r}
+	 * resumes them from the checkpoints found there.
+	 * {@code -v} renumbers the vertices of each atom in breadth-first or
+	 * reverse Cuthill-McKee order before solving it.
+	 * {@code -b} makes the exact searches charge the blocks not solved yet
+	 * lower bounds on their costs.
+	 */
+	public static void main(String[] args) throws IOException {
+		int nThreads = 1;
+		boolean anytime = false;
+		long deadline = 0;
+		String cacheFile = null;
+		int cacheSize = DEFAULT_CACHE_SIZE;
+		String statsFile = null;
+		boolean offHeap = false;
+		int speculation = 1;
+		String checkpointDir = null;
+		double checkpointInterval = 60;
+		boolean resume = false;
+		VertexOrder vertexOrder = null;
+		boolean blockBounds = false;
+		for (int i = 0; i < args.length; i++) {
+			if (args[ i ].equals( "-t" ) && i + 1 < args.length) {
+				nThreads = Integer.parseInt( args[ ++i ] );
+			} else if (args[ i ].equals( "-a" )) {
+				anytime = true;
+			} else if (args[ i ].equals( "-d" ) && i + 1 < args.length) {
+				anytime = true;
+				deadline = (long) (Double.parseDouble( args[ ++i ] ) * 1000);
+			} else if (args[ i ].equals( "-c" ) && i + 1 < args.length) {
+				cacheFile = args[ ++i ];
+			} else if (args[ i ].equals( "-cs" ) && i + 1 < args.length) {
+				cacheSize = Integer.parseInt( args[ ++i ] ) << 20;
+			} else if (args[ i ].equals( "-s" ) && i + 1 < args.length) {
+				statsFile = args[ ++i ];
+			} else if (args[ i ].equals( "-o" )) {
+				offHeap = true;
+			} else if (args[ i ].equals( "-u" ) && i + 1 < args.length) {
+				speculation = Integer.parseInt( args[ ++i ] );
+			} else if (args[ i ].equals( "-k" ) && i + 1 < args.length) {
+				checkpointDir = args[ ++i ];
+			} else if (args[ i ].equals( "-ki" ) && i + 1 < args.length) {
+				checkpointInterval = Double.parseDouble( args[ ++i ] );
+			} else if (args[ i ].equals( "-r" )) {
+				resume = true;
+			} else if (args[ i ].equals( "-v" ) && i + 1 < args.length) {
+				vertexOrder = VertexOrder.valueOf( args[ ++i ].toUpperCase( Locale.ROOT ) );
+			} else if (args[ i ].equals( "-b" )) {
+				blockBounds = true;
+			} else {
+				throw new IllegalArgumentException( "Unknown option: " + args[ i ] );
+			}
+		}
+		Solver solver = new Solver( nThreads );
+		solver.setOffHeap( offHeap );
+		solver.setSpeculation( speculation );
+		solver.setVertexOrder( vertexOrder );
+		solver.setBlockBounds( blockBounds );
+		if (checkpointDir != null) {
+			solver.setCheckpoint( new File( checkpointDir ), (long) (checkpointInterval * 1000), resume );
+		}
+		Stats stats = null;
+		if (statsFile != null) {
+			stats = new Stats();
+			solver.setStats( stats );
+		}
+		AtomCache atomCache = null;
+		if (cacheFile != null) {
+			atomCache = new AtomCache( new File( cacheFile ), cacheSize );
+			solver.setAtomCache( atomCache );
+		}
+		CountDownLatch done = new CountDownLatch( 1 );
+		if (anytime) {
+			CancellationToken cancel = deadline > 0 ? CancellationToken.after( deadline ) : new CancellationToken();
+			solver.setCancellationToken( cancel );
+			// on SIGTERM, stop the exact search and let main write the output
+			Runtime.getRuntime().addShutdownHook( new Thread( () -> {
+				cancel.cancel();
+				try {
+					done.await();
+				} catch (InterruptedException e) {
+				}
+			}));
+		}
+		// the shutdown hook waits for this, however main ends
+		try {
+			long start = solver.startTimer();
+			LabeledGraph g = Instance.read();
+			solver.stopTimer( Stats.Phase.READ, start );
+			solver.solve( g );
+			solver.shutdown();
+			start = solver.startTimer();
+			solver.writeFill( g, new PrintStream( new BufferedOutputStream( System.out ), false ) );
+			solver.stopTimer( Stats.Phase.WRITE, start );
+			if (atomCache != null) {
+				atomCache.close();
+			}
+			if (stats != null) {
+				solver.writeStats( g, nThreads, atomCache, statsFile );
+			}
+		} finally {
+			done.countDown();
+		}
 	}
 }
@@ -0,0 +1,229 @@
+package fillin.main;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Statistics of one run of the solver: the time spent in each phase of
+ * the pipeline, the size and fill of each atom, and the size of the search
+ * space of each exact search, level by level. The solver and the
+ * Decomposer hold a {@code null} reference when statistics are off,
+ * so that collecting them costs nothing but a null check.
+ * <p>
+ * Phase times are summed over all calls, which may overlap in time when
+ * pieces are solved in parallel; a phase called from within another
+ * (e.g. decompose within upperbound) is counted in both.
+ */
+public class Stats {
+
+	public enum Phase {
+		READ("read"),
+		COMPONENTS("components"),
+		CUT_POINTS("cutPoints"),
+		SAFE_SEPARATOR("safeSeparator"),
+		CLIQUE_SEPARATORS("cliqueSeparators"),
+		CHORDAL("chordal"),
+		UPPERBOUND("upperbound"),
+		DECOMPOSE("decompose"),
+		WRITE("write");
+
+		final String key;
+
+		Phase(String key) {
+			this.key = key;
+		}
+	}
+
+	private final long start;
+	private final AtomicLongArray nanos;
+	private final AtomicLongArray calls;
+	private final ArrayList<Atom> atoms;
+	private final ArrayList<Search> searches;
+	private final StringBuilder extra;
+
+	public Stats() {
+		start = System.nanoTime();
+		nanos = new AtomicLongArray(Phase.values().length);
+		calls = new AtomicLongArray(Phase.values().length);
+		atoms = new ArrayList<>();
+		searches = new ArrayList<>();
+		extra = new StringBuilder();
+	}
+
+	/**
+	 * Adds the time since {@code since} to the given phase.
+	 * @param since a start time taken from {@link System#nanoTime()}
+	 */
+	public void addTime(Phase phase, long since) {
+		nanos.addAndGet(phase.ordinal(), System.nanoTime() - since);
+		calls.incrementAndGet(phase.ordinal());
+	}
+
+	/**
+	 * Records an atom after it has been solved.
+	 * @param cached whether its fill-in was taken from the atom cache
+	 */
+	public synchronized void addAtom(int n, int m, int fill, long nanos, boolean cached) {
+		atoms.add(new Atom(n, m, fill, nanos, cached));
+	}
+
+	/**
+	 * Starts the record of an exact search on a graph with {@code n} vertices.
+	 * The record is added to these statistics when it is finished.
+	 */
+	public Search newSearch(int n, int upperbound) {
+		return new Search(n, upperbound);
+	}
+
+	private synchronized void addSearch(Search search) {
+		searches.add(search);
+	}
+
+	/**
+	 * Adds a top-level member to the JSON output.
+	 */
+	public synchronized void put(String name, long value) {
+		extra.append(",\n  \"").append(name).append("\": ").append(value);
+	}
+
+	/**
+	 * Writes the statistics as a JSON object.
+	 */
+	public synchronized void write(PrintStream ps) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\n  \"totalMs\": ").append(millis(System.nanoTime() - start));
+		sb.append(extra);
+		sb.append(",\n  \"phases\": {");
+		for (Phase phase: Phase.values()) {
+			sb.append(phase.ordinal() == 0 ? "\n" : ",\n");
+			sb.append("    \"").append(phase.key).append("\": {\"ms\": ")
+				.append(millis(nanos.get(phase.ordinal())))
+				.append(", \"calls\": ").append(calls.get(phase.ordinal())).append("}");
+		}
+		sb.append("\n  },\n  \"atoms\": [");
+		for (int i = 0; i < atoms.size(); i++) {
+			sb.append(i == 0 ? "\n    " : ",\n    ");
+			atoms.get(i).append(sb);
+		}
+		sb.append("\n  ],\n  \"searches\": [");
+		for (int i = 0; i < searches.size(); i++) {
+			sb.append(i == 0 ? "\n    " : ",\n    ");
+			searches.get(i).append(sb);
+		}
+		sb.append("\n  ]\n}");
+		ps.println(sb);
+		ps.flush();
+	}
+
+	private static String millis(long nanos) {
+		return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+	}
+
+	private static class Atom {
+		final int n;
+		final int m;
+		final int fill;
+		final long nanos;
+		final boolean cached;
+
+		Atom(int n, int m, int fill, long nanos, boolean cached) {
+			this.n = n;
+			this.m = m;
+			this.fill = fill;
+			this.nanos = nanos;
+			this.cached = cached;
+		}
+
+		void append(StringBuilder sb) {
+			sb.append("{\"n\": ").append(n).append(", \"m\": ").append(m)
+				.append(", \"fill\": ").append(fill)
+				.append(", \"ms\": ").append(millis(nanos))
+				.append(", \"cached\": ").append(cached).append("}");
+		}
+	}
+
+	/**
+	 * The record of one call of {@link Decomposer#decompose}. Each level is
+	 * a pair of the tentative upper bound and the target cost, with the
+	 * numbers of PMCs processed at the level and the numbers of PMCs,
+	 * TBlocks, MBlocks, sieve entries, sieve queries and TBlocks returned
+	 * by the queries so far under the tentative upper bound. The hits and
+	 * misses of the PMC test cache and of the cache of the blocks of PMCs
+	 * are counted over the whole search.
+	 */
+	public class Search {
+		final int n;
+		final int upperbound;
+		final long start;
+		int lowerbound;
+		int opt = -1;
+		long nanos;
+		long pmcCacheHits;
+		long pmcCacheMisses;
+		long blockCacheHits;
+		long blockCacheMisses;
+		final ArrayList<long[]> levels;
+
+		Search(int n, int upperbound) {
+			this.n = n;
+			this.upperbound = upperbound;
+			this.start = System.nanoTime();
+			levels = new ArrayList<>();
+		}
+
+		void setLowerbound(int lowerbound) {
+			this.lowerbound = lowerbound;
+		}
+
+		void setCaches(long pmcHits, long pmcMisses, long blockHits, long blockMisses) {
+			pmcCacheHits = pmcHits;
+			pmcCacheMisses = pmcMisses;
+			blockCacheHits = blockHits;
+			blockCacheMisses = blockMisses;
+		}
+
+		void addLevel(int tentativeUB, int targetCost, int processed,
+				int pmcs, int tBlocks, int mBlocks, int sieveSize, long sieveQueries, long sieveMatches) {
+			levels.add(new long[] {tentativeUB, targetCost, processed,
+					pmcs, tBlocks, mBlocks, sieveSize, sieveQueries, sieveMatches});
+		}
+
+		/**
+		 * Ends the search and adds it to the statistics.
+		 * @param opt the cost found; -1 if none
+		 */
+		void finish(int opt) {
+			this.opt = opt;
+			nanos = System.nanoTime() - start;
+			addSearch(this);
+		}
+
+		void append(StringBuilder sb) {
+			sb.append("{\"n\": ").append(n).append(", \"upperbound\": ").append(upperbound)
+				.append(", \"lowerbound\": ").append(lowerbound)
+				.append(", \"opt\": ").append(opt)
+				.append(", \"ms\": ").append(millis(nanos))
+				.append(", \"pmcCacheHits\": ").append(pmcCacheHits)
+				.append(", \"pmcCacheMisses\": ").append(pmcCacheMisses)
+				.append(", \"blockCacheHits\": ").append(blockCacheHits)
+				.append(", \"blockCacheMisses\": ").append(blockCacheMisses)
+				.append(", \"levels\": [");
+			for (int i = 0; i < levels.size(); i++) {
+				long[] l = levels.get(i);
+				sb.append(i == 0 ? "\n      " : ",\n      ");
+				sb.append("{\"tentativeUB\": ").append(l[0])
+					.append(", \"targetCost\": ").append(l[1])
+					.append(", \"processed\": ").append(l[2])
+					.append(", \"pmcs\": ").append(l[3])
+					.append(", \"tBlocks\": ").append(l[4])
+					.append(", \"mBlocks\": ").append(l[5])
+					.append(", \"sieveSize\": ").append(l[6])
+					.append(", \"sieveQueries\": ").append(l[7])
+					.append(", \"sieveMatches\": ").append(l[8]).append("}");
+			}
+			sb.append(levels.isEmpty() ? "]}" : "\n    ]}");
+		}
+	}
+}
@@ -0,0 +1,175 @@
+package fillin.main;
+
+import java.util.Arrays;
+
+import tw.common.EdgeSet;
+import tw.common.Graph;
+import tw.common.LabeledGraph;
+
+/**
+ * Numberings of the vertices of a graph that keep neighbors close, so that
+ * the vertex sets of a search fall into few words and the words of nearby
+ * sets tell them apart, which makes the nodes of the sieve more selective.
+ * An order lists the vertices in their new numbering: {@code order[i]} is
+ * the vertex that becomes vertex {@code i}.
+ */
+public enum VertexOrder {
+	/**
+	 * Breadth-first search from a vertex of minimum degree, the neighbors
+	 * of a vertex being taken in increasing order.
+	 */
+	BFS {
+		@Override
+		public int[] order(Graph g) {
+			return search(g, false);
+		}
+	},
+
+	/**
+	 * Reverse Cuthill-McKee: breadth-first search from a pseudo-peripheral
+	 * vertex, the neighbors of a vertex being taken in increasing order
+	 * of degree, reversed.
+	 */
+	RCM {
+		@Override
+		public int[] order(Graph g) {
+			int[] order = search(g, true);
+			for (int i = 0, j = order.length - 1; i < j; i++, j--) {
+				int t = order[i];
+				order[i] = order[j];
+				order[j] = t;
+			}
+			return order;
+		}
+	};
+
+	public abstract int[] order(Graph g);
+
+	/**
+	 * Searches every component, starting from a vertex of minimum degree,
+	 * or from a pseudo-peripheral vertex if {@code byDegree} is set, in
+	 * which case the neighbors are also taken by increasing degree.
+	 */
+	private static int[] search(Graph g, boolean byDegree) {
+		int[] order = new int[g.n];
+		boolean[] visited = new boolean[g.n];
+		int k = 0;
+		while (k < g.n) {
+			int start = -1;
+			for (int v = 0; v < g.n; v++) {
+				if (!visited[v] && (start < 0 || g.degree[v] < g.degree[start])) {
+					start = v;
+				}
+			}
+			if (byDegree) {
+				start = peripheral(g, start);
+			}
+			int head = k;
+			order[k++] = start;
+			visited[start] = true;
+			while (head < k) {
+				int v = order[head++];
+				int first = k;
+				for (int i = 0; i < g.degree[v]; i++) {
+					int w = g.neighbor[v][i];
+					if (!visited[w]) {
+						visited[w] = true;
+						order[k++] = w;
+					}
+				}
+				sort(g, order, first, k, byDegree);
+			}
+		}
+		return order;
+	}
+
+	/**
+	 * Sorts the vertices in {@code order[from..to)} by index, or by degree
+	 * and then by index if {@code byDegree} is set.
+	 */
+	private static void sort(Graph g, int[] order, int from, int to, boolean byDegree) {
+		if (!byDegree) {
+			Arrays.sort(order, from, to);
+			return;
+		}
+		for (int i = from + 1; i < to; i++) {
+			int v = order[i];
+			int j = i;
+			while (j > from && (g.degree[order[j - 1]] > g.degree[v]
+					|| g.degree[order[j - 1]] == g.degree[v] && order[j - 1] > v)) {
+				order[j] = order[j - 1];
+				j--;
+			}
+			order[j] = v;
+		}
+	}
+
+	/**
+	 * Finds a pseudo-peripheral vertex of the component of {@code v}, by
+	 * moving to a vertex of minimum degree in the last level of a
+	 * breadth-first search while the number of levels grows.
+	 */
+	private static int peripheral(Graph g, int v) {
+		int[] level = new int[g.n];
+		int[] queue = new int[g.n];
+		int eccentricity = -1;
+		while (true) {
+			Arrays.fill(level, -1);
+			int head = 0;
+			int tail = 0;
+			queue[tail++] = v;
+			level[v] = 0;
+			while (head < tail) {
+				int u = queue[head++];
+				for (int i = 0; i < g.degree[u]; i++) {
+					int w = g.neighbor[u][i];
+					if (level[w] < 0) {
+						level[w] = level[u] + 1;
+						queue[tail++] = w;
+					}
+				}
+			}
+			int last = level[queue[tail - 1]];
+			if (last <= eccentricity) {
+				return v;
+			}
+			eccentricity = last;
+			int next = -1;
+			for (int i = tail - 1; i >= 0 && level[queue[i]] == last; i--) {
+				if (next < 0 || g.degree[queue[i]] < g.degree[next]) {
+					next = queue[i];
+				}
+			}
+			v = next;
+		}
+	}
+
+	/**
+	 * Returns the graph with the vertices of {@code g} renumbered by the
+	 * given order, keeping the ids of the vertices.
+	 */
+	public static LabeledGraph renumber(LabeledGraph g, int[] order) {
+		int[] position = new int[g.n];
+		int[] ids = new int[g.n];
+		for (int i = 0; i < g.n; i++) {
+			position[order[i]] = i;
+			ids[i] = g.getId(order[i]);
+		}
+		LabeledGraph h = new LabeledGraph(g, ids);
+		int[] edges = g.inducedEdges(g.all, position);
+		h.setEdges(edges, edges.length / 2);
+		return h;
+	}
+
+	/**
+	 * Converts fill edges of the renumbered graph back into fill edges of
+	 * the original one.
+	 */
+	public static EdgeSet restore(EdgeSet fill, int[] order) {
+		EdgeSet result = new EdgeSet();
+		for (long e: fill.toArray()) {
+			result.add(order[EdgeSet.first(e)], order[EdgeSet.second(e)]);
+		}
+		return result;
+	}
+}
@@ -527,7 +527,7 @@ public class BlockSieve{
 	}
 
 	public TBlock put(XBitSet bs, TBlock value){
-		long longs[] = bs.toLongArray();
+		long longs[] = bs.words;
 		Node node = root, parent = null;
 
 		int i = 0, j1 = 0;
@@ -673,7 +673,7 @@ public class BlockSieve{
 	}
 
 	public List< TBlock > collectSuperblocks(XBitSet component, XBitSet neighbors, List< TBlock > list){
-		root.filterSuperblocks(component.toLongArray(), neighbors.toLongArray(), list);
+		root.filterSuperblocks(component.words, neighbors.words, list);
 		return list;
 	}
 
@@ -0,0 +1,130 @@
+package tw.common;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * A priority queue for elements with small non-negative integer keys,
+ * kept in one bucket per key. Adding an element and taking one with the
+ * smallest key take constant time, apart from skipping the empty buckets
+ * below the smallest key, which the cursor passes at most once as long as
+ * the keys added are not smaller than the smallest key in the queue.
+ * Elements with equal keys are taken in no particular order.
+ * The key of an element must not change while it is in the queue.
+ * The methods are synchronized, so that elements can be added by threads.
+ * <p>
+ * The keys are bounded by a maximum given to the constructor, so that the
+ * buckets never take more than that many slots; adding an element with
+ * a larger key is an error, which the caller avoids by not queueing such
+ * elements at all.
+ */
+public class BucketQueue< T > {
+	private static final int INITIAL_CAPACITY = 4;
+
+	private final ToIntFunction< T > key;
+	private final int maxKey;
+	private Object[][] buckets;
+	private int[] counts;
+	private int size;
+
+	/**
+	 * no bucket below this is non-empty
+	 */
+	private int min;
+
+	/**
+	 * @param key the key of an element, which must be non-negative
+	 * @param maxKey the largest key allowed
+	 */
+	public BucketQueue(ToIntFunction< T > key, int maxKey)
+	{
+		if (maxKey < 0) {
+			throw new IllegalArgumentException( "negative maximum key: " + maxKey );
+		}
+		this.key = key;
+		this.maxKey = maxKey;
+		int length = Math.min( 16, maxKey + 1 );
+		buckets = new Object[ length ][];
+		counts = new int[ length ];
+	}
+
+	public synchronized int size()
+	{
+		return size;
+	}
+
+	public synchronized boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	public synchronized void add(T e)
+	{
+		int k = key.applyAsInt( e );
+		if (k < 0 || k > maxKey) {
+			throw new IllegalArgumentException( "key out of range 0.." + maxKey + ": " + k );
+		}
+		if (k >= buckets.length) {
+			int length = Math.min( Math.max( 2 * buckets.length, k + 1 ), maxKey + 1 );
+			buckets = Arrays.copyOf( buckets, length );
+			counts = Arrays.copyOf( counts, length );
+		}
+		Object[] bucket = buckets[ k ];
+		if (bucket == null) {
+			bucket = buckets[ k ] = new Object[ INITIAL_CAPACITY ];
+		} else if (counts[ k ] == bucket.length) {
+			bucket = buckets[ k ] = Arrays.copyOf( bucket, 2 * bucket.length );
+		}
+		bucket[ counts[ k ]++ ] = e;
+		size++;
+		if (k < min) {
+			min = k;
+		}
+	}
+
+	/**
+	 * Applies the action to each element in the queue, in no particular order.
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized void forEach(Consumer< ? super T > action)
+	{
+		for (int k = 0; k < buckets.length; k++) {
+			for (int i = 0; i < counts[ k ]; i++) {
+				action.accept( (T) buckets[ k ][ i ] );
+			}
+		}
+	}
+
+	/**
+	 * Returns the smallest key in the queue, or -1 if the queue is empty.
+	 */
+	public synchronized int minKey()
+	{
+		if (size == 0) {
+			return -1;
+		}
+		while (counts[ min ] == 0) {
+			min++;
+		}
+		return min;
+	}
+
+	/**
+	 * Removes and returns an element with the smallest key,
+	 * or returns {@code null} if the queue is empty.
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized T poll()
+	{
+		int k = minKey();
+		if (k < 0) {
+			return null;
+		}
+		Object[] bucket = buckets[ k ];
+		T e = (T) bucket[ --counts[ k ] ];
+		bucket[ counts[ k ] ] = null;
+		size--;
+		return e;
+	}
+}
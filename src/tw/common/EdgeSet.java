@@ -0,0 +1,139 @@
+package tw.common;
+
+import java.util.Arrays;
+
+/**
+ * A set of undirected edges between non-negative integer vertices.
+ * Each edge is encoded into a {@code long}, the smaller end in the
+ * upper 32 bits and the larger end in the lower 32 bits, and stored in
+ * an open-addressing table of primitive longs.
+ */
+public class EdgeSet {
+	private static final long EMPTY = -1L;
+	private static final int INITIAL_CAPACITY = 16;
+
+	private long[] table;
+	private int size;
+
+	public EdgeSet()
+	{
+		table = new long[ INITIAL_CAPACITY ];
+		Arrays.fill( table, EMPTY );
+	}
+
+	public static final long encode(int u, int v)
+	{
+		if (u < v) {
+			return ((long) u << 32) | v;
+		} else {
+			return ((long) v << 32) | u;
+		}
+	}
+
+	public static final int first(long e)
+	{
+		return (int) (e >>> 32);
+	}
+
+	public static final int second(long e)
+	{
+		return (int) e;
+	}
+
+	public final int size()
+	{
+		return size;
+	}
+
+	public final boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	public boolean add(int u, int v)
+	{
+		return add( encode( u, v ) );
+	}
+
+	public boolean add(long e)
+	{
+		int mask = table.length - 1;
+		for (int i = mix( e ) & mask; ; i = (i + 1) & mask) {
+			if (table[ i ] == e) {
+				return false;
+			}
+			if (table[ i ] == EMPTY) {
+				table[ i ] = e;
+				if (++size * 2 > table.length) {
+					rehash();
+				}
+				return true;
+			}
+		}
+	}
+
+	public boolean contains(int u, int v)
+	{
+		return contains( encode( u, v ) );
+	}
+
+	public boolean contains(long e)
+	{
+		int mask = table.length - 1;
+		for (int i = mix( e ) & mask; ; i = (i + 1) & mask) {
+			if (table[ i ] == e) {
+				return true;
+			}
+			if (table[ i ] == EMPTY) {
+				return false;
+			}
+		}
+	}
+
+	public void addAll(EdgeSet set)
+	{
+		for (long e: set.table) {
+			if (e != EMPTY) {
+				add( e );
+			}
+		}
+	}
+
+	/**
+	 * Returns the encoded edges of this set, in no particular order.
+	 */
+	public long[] toArray()
+	{
+		long[] result = new long[ size ];
+		int k = 0;
+		for (long e: table) {
+			if (e != EMPTY) {
+				result[ k++ ] = e;
+			}
+		}
+		return result;
+	}
+
+	private void rehash()
+	{
+		long[] old = table;
+		table = new long[ old.length * 2 ];
+		Arrays.fill( table, EMPTY );
+		int mask = table.length - 1;
+		for (long e: old) {
+			if (e != EMPTY) {
+				int i = mix( e ) & mask;
+				while (table[ i ] != EMPTY) {
+					i = (i + 1) & mask;
+				}
+				table[ i ] = e;
+			}
+		}
+	}
+
+	private static int mix(long e)
+	{
+		e *= 0x9E3779B97F4A7C15L;
+		return (int) (e ^ (e >>> 32));
+	}
+}
@@ -6,7 +6,6 @@ package tw.common;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.BitSet;
 
 /**
  * This class provides a representation of undirected simple graphs.
@@ -102,6 +101,99 @@ public class Graph {
 		addToNeighbors(v, u);
 	}
 	
+	/**
+	 * Sets the edges of this graph from an edge list in bulk,
+	 * replacing any edges it already has.
+	 * Edge {@code i} joins {@code edges[2 * i]} and {@code edges[2 * i + 1]}.
+	 * Self-loops and duplicate edges are ignored.
+	 * Both orientations of the edges are sorted into
+	 * compressed sparse row form by two counting sort passes,
+	 * deduplicated in a single scan, and each adjacency list is
+	 * then cut out of the row array with its final length.
+	 * The running time is linear in {@code n + m}, apart from
+	 * clearing the {@code neighborSet} bit vectors.
+	 * @param edges edge list
+	 * @param m the number of edges in the list
+	 */
+	public void setEdges(int[] edges, int m) {
+		// both orientations, sorted by the second vertex
+		int[] offset = new int[n + 1];
+		for (int i = 0; i < 2 * m; i++) {
+			offset[edges[i] + 1]++;
+		}
+		for (int v = 0; v < n; v++) {
+			offset[v + 1] += offset[v];
+		}
+		int[] pos = Arrays.copyOf(offset, n);
+		int[] from = new int[2 * m];
+		int[] to = new int[2 * m];
+		for (int i = 0; i < m; i++) {
+			int u = edges[2 * i];
+			int v = edges[2 * i + 1];
+			int p = pos[v]++;
+			from[p] = u;
+			to[p] = v;
+			p = pos[u]++;
+			from[p] = v;
+			to[p] = u;
+		}
+
+		// stable by the first vertex: rows of the CSR array, each sorted
+		pos = Arrays.copyOf(offset, n);
+		int[] row = new int[2 * m];
+		for (int i = 0; i < 2 * m; i++) {
+			row[pos[from[i]]++] = to[i];
+		}
+
+		for (int u = 0; u < n; u++) {
+			neighborSet[u].clear();
+			int d = 0;
+			int prev = -1;
+			for (int i = offset[u]; i < offset[u + 1]; i++) {
+				int v = row[i];
+				if (v != u && v != prev) {
+					row[offset[u] + d++] = v;
+					neighborSet[u].set(v);
+				}
+				prev = v;
+			}
+			degree[u] = d;
+			neighbor[u] = Arrays.copyOfRange(row, offset[u], offset[u] + d);
+		}
+	}
+
+	/**
+	 * Lists the edges of the subgraph induced by the given vertex set,
+	 * each edge once, with vertices renumbered by the given table.
+	 * The result can be passed to {@link #setEdges}.
+	 * @param vertices the vertex set
+	 * @param conv {@code conv[v]} is the new number of vertex {@code v}
+	 * @return the edge list, of length twice the number of edges
+	 */
+	public int[] inducedEdges(XBitSet vertices, int conv[]) {
+		int m = 0;
+		for (int u = vertices.nextSetBit(0); u >= 0; u = vertices.nextSetBit(u + 1)) {
+			for (int i = 0; i < degree[u]; i++) {
+				int v = neighbor[u][i];
+				if (u < v && vertices.get(v)) {
+					m++;
+				}
+			}
+		}
+		int[] edges = new int[2 * m];
+		int k = 0;
+		for (int u = vertices.nextSetBit(0); u >= 0; u = vertices.nextSetBit(u + 1)) {
+			for (int i = 0; i < degree[u]; i++) {
+				int v = neighbor[u][i];
+				if (u < v && vertices.get(v)) {
+					edges[k++] = conv[u];
+					edges[k++] = conv[v];
+				}
+			}
+		}
+		return edges;
+	}
+
 	public void removeEdge(int u, int v)
 	{
 		removeFromNeighbors(u, v);
@@ -263,7 +355,7 @@ public class Graph {
 	 * the given vertex set
 	 */
 	public XBitSet closedNeighborSet(XBitSet set) {
-		XBitSet result = (XBitSet) set.clone();
+		XBitSet result = set.clone();
 		for (int v = set.nextSetBit(0); v >= 0; v = set.nextSetBit(v + 1)) {
 			result.or(neighborSet[v]);
 		}
@@ -271,7 +363,7 @@ public class Graph {
 	}
 	
 	public XBitSet closedNeighborSet(int x) {
-		XBitSet result = (XBitSet) neighborSet[ x ].clone();
+		XBitSet result = neighborSet[ x ].clone();
 		result.set( x );
 		return result;
 	}
@@ -344,19 +436,22 @@ public class Graph {
 	public ArrayList<XBitSet> getComponents(XBitSet separator) {
 		ArrayList<XBitSet> result = new ArrayList<XBitSet>();
 		XBitSet rest = all.subtract(separator);
+		XBitSet toBeScanned = new XBitSet(n);
+		XBitSet save = new XBitSet(n);
 		for (int v = rest.nextSetBit(0); v >= 0; v = rest.nextSetBit(v + 1)) {
-			XBitSet c = (XBitSet) neighborSet[v].clone();
-			XBitSet toBeScanned = c.subtract(separator);
+			XBitSet c = neighborSet[v].clone();
+			toBeScanned.setDifference(c, separator);
 			c.set(v);
 			while (!toBeScanned.isEmpty()) {
-				XBitSet save = (XBitSet) c.clone();
+				save.copyFrom(c);
 				for (int w = toBeScanned.nextSetBit(0); w >= 0; w = toBeScanned.nextSetBit(w + 1)) {
 					c.or(neighborSet[w]);
 				}
-				toBeScanned = c.subtract(save);
+				toBeScanned.setDifference(c, save);
 				toBeScanned.andNot(separator);
 			}
-			result.add(c.subtract(separator));
+			c.andNot(separator);
+			result.add(c);
 			rest.andNot(c);
 		}
 		return result;
@@ -374,16 +469,17 @@ public class Graph {
 			return true;
 		}
 
-		XBitSet c = (XBitSet) neighborSet[v].clone();
+		XBitSet c = neighborSet[v].clone();
 		XBitSet toScan = c.intersectWith(vertices);
+		XBitSet save = new XBitSet(n);
 		c.set(v);
 		while (!toScan.isEmpty()) {
-			XBitSet save = (XBitSet) c.clone();
+			save.copyFrom(c);
 			for (int w = toScan.nextSetBit(0); w >= 0;
 					w = toScan.nextSetBit(w + 1)) {
 				c.or(neighborSet[w]);
 			}
-			toScan = c.subtract(save);
+			toScan.setDifference(c, save);
 			toScan.and(vertices);
 		}
 		return vertices.isSubset(c);
@@ -394,7 +490,7 @@ public class Graph {
 	 * @param vertices the set of vertices inducing the subraph
 	 * @return {@code true} if the subgrpah is biconnected; {@code false} otherwise
 	 */
-	public boolean isBiconnected(BitSet vertices) {
+	public boolean isBiconnected(XBitSet vertices) {
 		//    if (!isConnected(vertices)) {
 		//      return false;
 		//    }
@@ -468,12 +564,12 @@ public class Graph {
 	 * @param vertices the set of vertices inducing the subraph
 	 * @return {@code true} if the subgrpah is triconnected; {@code false} otherwise
 	 */
-	public boolean isTriconnected(BitSet vertices) {
+	public boolean isTriconnected(XBitSet vertices) {
 		if (!isBiconnected(vertices)) {
 			return false;
 		}
 
-		BitSet work = (BitSet) vertices.clone();
+		XBitSet work = vertices.clone();
 		int prev = -1;
 		for (int v = vertices.nextSetBit(0); v >= 0;
 				v = vertices.nextSetBit(v + 1)) {
@@ -499,7 +595,7 @@ public class Graph {
 	 * @param vertices the set of vertices of the subgraph
 	 * @return the set of articulation vertices
 	 */
-	public XBitSet articulations(BitSet vertices) {
+	public XBitSet articulations(XBitSet vertices) {
 		articulationSet = new XBitSet(n);
 		dfCount = 1;
 		dfn = new int[n];
@@ -0,0 +1,138 @@
+package tw.common;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A map from the handles of an {@link XBitSetStore} to values, stored in
+ * an array indexed by the handle. The array is cut into chunks of
+ * {@code CHUNK_SIZE} entries made when an entry in them is first set, so
+ * that a table costs little for handles it does not map. A lookup is an
+ * array access, without hashing or comparing sets.
+ * Entries cannot be removed; the table is thread-safe.
+ */
+public class HandleTable< V > {
+	private static final int CHUNK_BITS = 10;
+	private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+	private static final int INITIAL_CHUNKS = 4;
+
+	private volatile AtomicReferenceArray< AtomicReferenceArray< V > > chunks;
+	private final AtomicInteger size = new AtomicInteger();
+
+	public HandleTable()
+	{
+		chunks = new AtomicReferenceArray<>( INITIAL_CHUNKS );
+	}
+
+	public int size()
+	{
+		return size.get();
+	}
+
+	/**
+	 * Returns the value of the given handle; {@code null} if there is none
+	 * or the handle is negative.
+	 */
+	public V get(int handle)
+	{
+		if (handle < 0) {
+			return null;
+		}
+		AtomicReferenceArray< AtomicReferenceArray< V > > chunks = this.chunks;
+		int c = handle >>> CHUNK_BITS;
+		if (c >= chunks.length()) {
+			return null;
+		}
+		AtomicReferenceArray< V > chunk = chunks.get( c );
+		return chunk == null ? null : chunk.get( handle & (CHUNK_SIZE - 1) );
+	}
+
+	/**
+	 * Sets the value of the given handle.
+	 * @return the previous value; {@code null} if there was none
+	 */
+	public V put(int handle, V value)
+	{
+		V old = chunkOf( handle ).getAndSet( handle & (CHUNK_SIZE - 1), value );
+		if (old == null) {
+			size.incrementAndGet();
+		}
+		return old;
+	}
+
+	/**
+	 * Sets the value of the given handle if it has none.
+	 * @return the value it has; {@code null} if the given one has been set
+	 */
+	public V putIfAbsent(int handle, V value)
+	{
+		AtomicReferenceArray< V > chunk = chunkOf( handle );
+		int i = handle & (CHUNK_SIZE - 1);
+		if (chunk.compareAndSet( i, null, value )) {
+			size.incrementAndGet();
+			return null;
+		}
+		return chunk.get( i );
+	}
+
+	/**
+	 * Applies the action to each value, in the order of the handles.
+	 */
+	public void forEach(Consumer< ? super V > action)
+	{
+		AtomicReferenceArray< AtomicReferenceArray< V > > chunks = this.chunks;
+		for (int c = 0; c < chunks.length(); c++) {
+			AtomicReferenceArray< V > chunk = chunks.get( c );
+			if (chunk == null) {
+				continue;
+			}
+			for (int i = 0; i < CHUNK_SIZE; i++) {
+				V value = chunk.get( i );
+				if (value != null) {
+					action.accept( value );
+				}
+			}
+		}
+	}
+
+	private AtomicReferenceArray< V > chunkOf(int handle)
+	{
+		int c = handle >>> CHUNK_BITS;
+		AtomicReferenceArray< AtomicReferenceArray< V > > chunks = this.chunks;
+		if (c < chunks.length()) {
+			AtomicReferenceArray< V > chunk = chunks.get( c );
+			if (chunk != null) {
+				return chunk;
+			}
+		}
+		return newChunk( c );
+	}
+
+	/**
+	 * Makes the given chunk, and room for it. Chunks are made and the array
+	 * of chunks is replaced under the lock, so that no chunk is made in an
+	 * array being copied; a chunk once made is never replaced.
+	 */
+	private synchronized AtomicReferenceArray< V > newChunk(int c)
+	{
+		AtomicReferenceArray< AtomicReferenceArray< V > > chunks = this.chunks;
+		if (c >= chunks.length()) {
+			int length = chunks.length();
+			while (length <= c) {
+				length *= 2;
+			}
+			AtomicReferenceArray< AtomicReferenceArray< V > > grown = new AtomicReferenceArray<>( length );
+			for (int i = 0; i < chunks.length(); i++) {
+				grown.set( i, chunks.get( i ) );
+			}
+			this.chunks = chunks = grown;
+		}
+		AtomicReferenceArray< V > chunk = chunks.get( c );
+		if (chunk == null) {
+			chunk = new AtomicReferenceArray<>( CHUNK_SIZE );
+			chunks.set( c, chunk );
+		}
+		return chunk;
+	}
+}
@@ -1,18 +1,46 @@
 package tw.common;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 
 public class LabeledGraph extends Graph {
 	
-	private String[] labels;
+	/**
+	 * label table shared by the input graph and all of its subgraphs,
+	 * indexed by the vertex ids of the input graph
+	 */
+	private final String[] labels;
+
+	/**
+	 * {@code ids[v]} is the vertex id in the input graph of vertex {@code v}
+	 */
+	private final int[] ids;
 	private boolean[] visited;
 	
+	/**
+	 * Constructs the input graph, whose vertex {@code v} has label {@code labels[v]}.
+	 * @param labels the label table, which is not copied
+	 */
 	public LabeledGraph(String[] labels)
 	{
 		super( labels.length );
-		Arrays.sort( labels );
 		this.labels = labels;
+		this.ids = new int[ n ];
+		for (int v = 0; v < n; v++) {
+			ids[ v ] = v;
+		}
+	}
+	
+	/**
+	 * Constructs a subgraph of the input graph, sharing its label table.
+	 * @param g the input graph or one of its subgraphs
+	 * @param ids {@code ids[v]} is the vertex id in the input graph
+	 * of vertex {@code v} of the new graph
+	 */
+	public LabeledGraph(LabeledGraph g, int[] ids)
+	{
+		super( ids.length );
+		this.labels = g.labels;
+		this.ids = ids;
 	}
 	
 	public int edges()
@@ -24,16 +52,25 @@ public class LabeledGraph extends Graph {
 		return sum / 2;
 	}
 
-	public void addEdgeBetween(String u, String v)
+	/**
+	 * Returns the vertex id in the input graph of the given vertex.
+	 */
+	public final int getId(final int v)
+	{
+		return ids[ v ];
+	}
+	
+	/**
+	 * Returns the label of the vertex with the given id in the input graph.
+	 */
+	public final String labelOf(final int id)
 	{
-		int uid = Arrays.binarySearch( labels, u );
-		int vid = Arrays.binarySearch( labels, v );
-		super.addEdge( uid, vid );
+		return labels[ id ];
 	}
 	
 	public final String getLabel(final int v)
 	{
-		return labels[ v ];
+		return labels[ ids[ v ] ];
 	}
 	
 	private int[] num;
@@ -95,8 +132,8 @@ public class LabeledGraph extends Graph {
 	{
 		ArrayList< XBitSet > components = new ArrayList< XBitSet >();
 		XBitSet[] filledGraph = mcs_m();
-		XBitSet B = (XBitSet)all.clone();
-		XBitSet high = (XBitSet)all.clone();
+		XBitSet B = all.clone();
+		XBitSet high = all.clone();
 		
 		for (int i = 0; i < n; i++) {
 			int v = alpha[ i ];
@@ -160,13 +197,13 @@ public class LabeledGraph extends Graph {
 	{
 		XBitSet[] filledGraph = new XBitSet[ n ];
 		for (int i = 0; i < n; i++) {
-			filledGraph[ i ] = (XBitSet)neighborSet[ i ].clone();
+			filledGraph[ i ] = neighborSet[ i ].clone();
 		}
 		int[] weight = new int[ n ];
 		alpha = new int[ n ];
 		XBitSet[] bucket = new XBitSet[ n ];
-		XBitSet unnumbered = (XBitSet)all.clone();
-		bucket[ 0 ] = (XBitSet)all.clone();
+		XBitSet unnumbered = all.clone();
+		bucket[ 0 ] = all.clone();
 		for (int i = 1; i < n; i++) {
 			bucket[ i ] = new XBitSet( n );
 		}
@@ -261,7 +298,7 @@ public class LabeledGraph extends Graph {
 		boolean[] used = new boolean[ n ];
 		
 		XBitSet[] bucket = new XBitSet[ n ];
-		bucket[ 0 ] = (XBitSet)all.clone();
+		bucket[ 0 ] = all.clone();
 		for (int i = 1; i < n; i++) {
 			bucket[ i ] = new XBitSet( n );
 		}
@@ -318,7 +355,7 @@ public class LabeledGraph extends Graph {
 		int size = S.cardinality();
 		int deg_sum = 0;
 		for (int u = S.nextSetBit( 0 ); u >= 0; u = S.nextSetBit( u + 1 )) {
-			deg_sum += S.intersectWith( neighborSet[ u ] ).cardinality();
+			deg_sum += S.intersectionCardinality( neighborSet[ u ] );
 		}
 		return (size * (size - 1) - deg_sum) / 2;
 	}
@@ -327,7 +364,7 @@ public class LabeledGraph extends Graph {
 	{
 		int deg_sum = 0; 
 		for (int x = X.nextSetBit( 0 ); x >= 0; x = X.nextSetBit( x + 1 )) {
-			deg_sum += Y.intersectWith( neighborSet[ x ] ).cardinality();
+			deg_sum += Y.intersectionCardinality( neighborSet[ x ] );
 		}
 		return X.cardinality() * Y.cardinality() - deg_sum;
 	}
@@ -5,7 +5,6 @@ package tw.common;
 
 import java.io.PrintStream;
 import java.util.Arrays;
-import java.util.HashSet;
 
 /**
  * This class provides a representation of tree-decompositions of graphs.
@@ -627,20 +626,18 @@ public class TreeDecomposition {
 		return -1;
 	}
 	
-	public HashSet< Pair< String, String > > computeFill(LabeledGraph g)
+	/**
+	 * Computes the fill edges of the given graph implied by the bags
+	 * of this tree decomposition.
+	 */
+	public EdgeSet computeFill(Graph g)
 	{
-		HashSet< Pair< String, String > > fillEdges = new HashSet<>();
+		EdgeSet fillEdges = new EdgeSet();
 		for (int i = 1; i <= nb; i++) {
 			for (int j = 0; j < bags[ i ].length; j++) {
 				for (int k = j + 1; k < bags[ i ].length; k++) {
 					if (g.areAdjacent( bags[ i ][ j ] , bags[ i ][ k ]) == false) {
-						String u = g.getLabel( bags[ i ][ j ] );
-						String v = g.getLabel( bags[ i ][ k ] );
-						if (u.compareTo( v ) < 0) {
-							fillEdges.add( new Pair< String, String >( u, v ) );
-						} else {
-							fillEdges.add( new Pair< String, String >( v, u ) );
-						}
+						fillEdges.add( bags[ i ][ j ], bags[ i ][ k ] );
 					}
 				}
 			}
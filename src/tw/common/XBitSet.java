@@ -3,40 +3,58 @@
  */
 package tw.common;
 
-import java.util.BitSet;
+import java.util.Arrays;
 import java.util.Comparator;
 
 /**
- * This class extends {@code java.util.BitSet} which implements 
- * a variable length bit vector. 
- * The main purpose is to provide methods that create
- * a new vector as a result of a set operation such as 
- * union and intersection, rather than modifying the 
- * existing one.  See API documentation for {@code java.util.BitSet}.
+ * This class implements a bit vector backed by a {@code long} array
+ * whose length is fixed when the vector is created, large enough
+ * for the vertices of the graph it is used with.
+ * The methods follow {@code java.util.BitSet}, without the bookkeeping
+ * of the words in use: {@code set} grows the array only if a member
+ * beyond the initial size is added, and the binary operations
+ * work on the common length of the two arrays.
+ * <p>
+ * Besides the in-place operations {@code or}, {@code and} and
+ * {@code andNot}, there are methods that create
+ * a new vector as a result of a set operation such as
+ * union and intersection, rather than modifying the
+ * existing one, methods that store the result in
+ * a given destination vector, and tests that
+ * allocate nothing, such as {@code isSubset}
+ * and {@code intersectionCardinality}.
  *
  * @author  Hisao Tamaki
  */
 
-public class XBitSet extends BitSet 
-implements Comparable<XBitSet>{
+public final class XBitSet
+implements Comparable<XBitSet>, Cloneable {
+
+	/**
+	 * the words of this bit vector; bit {@code i} is
+	 * bit {@code i % 64} of {@code words[i / 64]}.
+	 * Package-private so that {@code BlockSieve} can read
+	 * the words without copying them.
+	 */
+	long[] words;
 
 	/**
 	 * Creates an empty {@code XBitSet}.
 	 */
 	public XBitSet() {
-		super();
+		words = new long[1];
 	}
 
 	/**
-	 * Creates an empty {@code XBitSet} whose initial size is large enough to explicitly
+	 * Creates an empty {@code XBitSet} whose size is large enough to
 	 * contain members smaller than {@code n}.
 	 *
-	 * @param  n the initial size of the {@code XBitSet} 
-	 * @throws NegativeArraySizeException if the specified initial size
+	 * @param  n the size of the {@code XBitSet}
+	 * @throws NegativeArraySizeException if the specified size
 	 *         is negative
 	 */
 	public XBitSet(int n) {
-		super(n);
+		words = new long[(n + 63) >>> 6];
 	}
 
 	/**
@@ -45,28 +63,178 @@ implements Comparable<XBitSet>{
 	 * @param  a an array of members to be in the {@code XBitSet}
 	 */
 	public XBitSet(int a[]) {
-		super();
+		this();
 		for (int i = 0; i < a.length; i++) {
 			set(a[i]);
 		}
-	}  
+	}
 
 	/**
 	 * Creates an {@code XBitSet} with members provided by an array.
-	 * The initial size is large enough to explicitly
-	 * contain members smaller than {@code n}.  
+	 * The size is large enough to
+	 * contain members smaller than {@code n}.
 	 *
-	 * @param  n the initial size of the {@code XBitSet}
+	 * @param  n the size of the {@code XBitSet}
 	 * @param  a an array of indices where the bits should be set
-	 * @throws NegativeArraySizeException if the specified initial size
+	 * @throws NegativeArraySizeException if the specified size
 	 *         is negative
 	 */
 	public XBitSet(int n, int a[]) {
-		super(n);
+		this(n);
 		for (int i = 0; i < a.length; i++) {
 			set(a[i]);
 		}
-	}  
+	}
+
+	private XBitSet(long[] words) {
+		this.words = words;
+	}
+
+	/**
+	 * Adds the specified member
+	 * @param i the member to be added
+	 */
+	public void set(int i) {
+		int w = i >>> 6;
+		if (w >= words.length) {
+			words = Arrays.copyOf(words, Math.max(2 * words.length, w + 1));
+		}
+		words[w] |= 1L << i;
+	}
+
+	/**
+	 * Removes the specified member
+	 * @param i the member to be removed
+	 */
+	public void clear(int i) {
+		int w = i >>> 6;
+		if (w < words.length) {
+			words[w] &= ~(1L << i);
+		}
+	}
+
+	/**
+	 * Removes all the members
+	 */
+	public void clear() {
+		Arrays.fill(words, 0L);
+	}
+
+	/**
+	 * Returns {@code true} if the specified element is
+	 * a member of this {@code XBitSet}
+	 * @param i the element
+	 * @return {@code true} if {@code i} is a member
+	 */
+	public boolean get(int i) {
+		int w = i >>> 6;
+		return w < words.length && (words[w] & (1L << i)) != 0;
+	}
+
+	/**
+	 * Returns the smallest member that is greater than or
+	 * equal to the specified element
+	 * @param from the element to start the search from
+	 * @return the member found; -1 if there is none
+	 */
+	public int nextSetBit(int from) {
+		int w = from >>> 6;
+		if (w >= words.length) {
+			return -1;
+		}
+		long word = words[w] & (-1L << from);
+		while (true) {
+			if (word != 0) {
+				return (w << 6) + Long.numberOfTrailingZeros(word);
+			}
+			if (++w == words.length) {
+				return -1;
+			}
+			word = words[w];
+		}
+	}
+
+	/**
+	 * Returns the number of members
+	 * @return the cardinality
+	 */
+	public int cardinality() {
+		int sum = 0;
+		for (long word: words) {
+			sum += Long.bitCount(word);
+		}
+		return sum;
+	}
+
+	/**
+	 * Returns the largest member plus one
+	 * @return the length; 0 if this {@code XBitSet} is empty
+	 */
+	public int length() {
+		for (int w = words.length - 1; w >= 0; w--) {
+			if (words[w] != 0) {
+				return (w << 6) + 64 - Long.numberOfLeadingZeros(words[w]);
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns {@code true} if this {@code XBitSet} has no members
+	 * @return {@code true} if empty
+	 */
+	public boolean isEmpty() {
+		for (long word: words) {
+			if (word != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Adds the members of the argument {@code XBitSet} to
+	 * this {@code XBitSet}
+	 * @param set an {@code XBitSet}
+	 */
+	public void or(XBitSet set) {
+		long[] s = set.words;
+		if (s.length > words.length) {
+			words = Arrays.copyOf(words, s.length);
+		}
+		for (int w = 0; w < s.length; w++) {
+			words[w] |= s[w];
+		}
+	}
+
+	/**
+	 * Removes the members not in the argument {@code XBitSet} from
+	 * this {@code XBitSet}
+	 * @param set an {@code XBitSet}
+	 */
+	public void and(XBitSet set) {
+		long[] s = set.words;
+		int l = Math.min(words.length, s.length);
+		for (int w = 0; w < l; w++) {
+			words[w] &= s[w];
+		}
+		for (int w = l; w < words.length; w++) {
+			words[w] = 0;
+		}
+	}
+
+	/**
+	 * Removes the members of the argument {@code XBitSet} from
+	 * this {@code XBitSet}
+	 * @param set an {@code XBitSet}
+	 */
+	public void andNot(XBitSet set) {
+		long[] s = set.words;
+		int l = Math.min(words.length, s.length);
+		for (int w = 0; w < l; w++) {
+			words[w] &= ~s[w];
+		}
+	}
 
 	/**
 	 * Returns {@code true} if this target {@code XBitSet} is a subset
@@ -77,9 +245,19 @@ implements Comparable<XBitSet>{
 	 *         of the argument {@code XBitSet}
 	 */
 	public boolean isSubset(XBitSet set) {
-		BitSet tmp = (BitSet) this.clone();
-		tmp.andNot(set);
-		return tmp.isEmpty();
+		long[] s = set.words;
+		int l = Math.min(words.length, s.length);
+		for (int w = 0; w < l; w++) {
+			if ((words[w] & ~s[w]) != 0) {
+				return false;
+			}
+		}
+		for (int w = l; w < words.length; w++) {
+			if (words[w] != 0) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	/**
@@ -87,26 +265,31 @@ implements Comparable<XBitSet>{
 	 * from the argument {@code XBitSet}
 	 *
 	 * @param  set an {@code XBitSet}
-	 * @return boolean indicating whether this {@code XBitSet} is 
+	 * @return boolean indicating whether this {@code XBitSet} is
 	 *  disjoint from the argument {@code XBitSet}
 	 */
 	public boolean isDisjoint(XBitSet set) {
-		BitSet tmp = (BitSet) this.clone();
-		tmp.and(set);
-		return tmp.isEmpty();
+		return !intersects(set);
 	}
 
 	/**
-	 * Returns {@code true} if this target {@code XBitSet} has a 
+	 * Returns {@code true} if this target {@code XBitSet} has a
 	 * non-empty intersection with the argument {@code XBitSet}
 	 *
 	 * @param  set an {@code XBitSet}
-	 * @return boolean indicating whether this {@code XBitSet} 
+	 * @return boolean indicating whether this {@code XBitSet}
 	 *  intersects with the argument {@code XBitSet}
 	 */
 
 	public boolean intersects(XBitSet set) {
-		return super.intersects(set);
+		long[] s = set.words;
+		int l = Math.min(words.length, s.length);
+		for (int w = 0; w < l; w++) {
+			if ((words[w] & s[w]) != 0) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 	/**
@@ -118,9 +301,25 @@ implements Comparable<XBitSet>{
 	 *  of the argument {@code XBitSet}
 	 */
 	public boolean isSuperset(XBitSet set) {
-		BitSet tmp = (BitSet) set.clone();
-		tmp.andNot(this);
-		return tmp.isEmpty();
+		return set.isSubset(this);
+	}
+
+	/**
+	 * Returns the cardinality of the intersection of this
+	 * target {@code XBitSet} and the argument {@code XBitSet},
+	 * without creating the intersection
+	 *
+	 * @param  set an {@code XBitSet}
+	 * @return the cardinality of the intersection
+	 */
+	public int intersectionCardinality(XBitSet set) {
+		long[] s = set.words;
+		int l = Math.min(words.length, s.length);
+		int sum = 0;
+		for (int w = 0; w < l; w++) {
+			sum += Long.bitCount(words[w] & s[w]);
+		}
+		return sum;
 	}
 
 	/**
@@ -131,7 +330,7 @@ implements Comparable<XBitSet>{
 	 * @return the union {@code XBitSet}
 	 */
 	public XBitSet unionWith(XBitSet set) {
-		XBitSet result = (XBitSet) this.clone();
+		XBitSet result = this.clone();
 		result.or(set);
 		return result;
 	}
@@ -144,7 +343,7 @@ implements Comparable<XBitSet>{
 	 * @return the intersection {@code XBitSet}
 	 */
 	public XBitSet intersectWith(XBitSet set) {
-		XBitSet result = (XBitSet) this.clone();
+		XBitSet result = this.clone();
 		result.and(set);
 		return result;
 	}
@@ -157,20 +356,83 @@ implements Comparable<XBitSet>{
 	 * @return the difference {@code XBitSet}
 	 */
 	public XBitSet subtract(XBitSet set) {
-		XBitSet result = (XBitSet) this.clone();
+		XBitSet result = this.clone();
 		result.andNot(set);
 		return result;
 	}
 
 	/**
-	 * Returns {@code true} if the target {@code XBitSet} has a member 
+	 * Makes this target {@code XBitSet} a copy of the
+	 * argument {@code XBitSet}.
+	 * @param  set an {@code XBitSet}
+	 * @return this {@code XBitSet}
+	 */
+	public XBitSet copyFrom(XBitSet set) {
+		long[] s = set.words;
+		if (s.length > words.length) {
+			words = new long[s.length];
+		}
+		System.arraycopy(s, 0, words, 0, s.length);
+		for (int w = s.length; w < words.length; w++) {
+			words[w] = 0;
+		}
+		return this;
+	}
+
+	/**
+	 * Makes this target {@code XBitSet} the union of the two
+	 * arguments. The target may be one of the arguments.
+	 * @param  a an {@code XBitSet}
+	 * @param  b an {@code XBitSet}
+	 * @return this {@code XBitSet}
+	 */
+	public XBitSet setUnion(XBitSet a, XBitSet b) {
+		if (a != this) {
+			copyFrom(a);
+		}
+		or(b);
+		return this;
+	}
+
+	/**
+	 * Makes this target {@code XBitSet} the intersection of the two
+	 * arguments. The target may be one of the arguments.
+	 * @param  a an {@code XBitSet}
+	 * @param  b an {@code XBitSet}
+	 * @return this {@code XBitSet}
+	 */
+	public XBitSet setIntersection(XBitSet a, XBitSet b) {
+		if (a != this) {
+			copyFrom(a);
+		}
+		and(b);
+		return this;
+	}
+
+	/**
+	 * Makes this target {@code XBitSet} the set of members of
+	 * {@code a} not in {@code b}. The target may be {@code a}.
+	 * @param  a an {@code XBitSet}
+	 * @param  b an {@code XBitSet}
+	 * @return this {@code XBitSet}
+	 */
+	public XBitSet setDifference(XBitSet a, XBitSet b) {
+		if (a != this) {
+			copyFrom(a);
+		}
+		andNot(b);
+		return this;
+	}
+
+	/**
+	 * Returns {@code true} if the target {@code XBitSet} has a member
 	 * that is smaller than the smallest member of the argument {@code XBitSet}.
 	 * Both the target and the argument {@code XBitSet} must be non-empty
 	 * to ensure a meaningful result.
 	 * @param  set an {@code XBitSet}
 	 * @return {@code true} if the target {@code XBitSet} has a member
 	 * smaller than the smallest member of the argument {@code XBitSet};
-	 * {@code false} otherwise 
+	 * {@code false} otherwise
 	 */
 	public boolean hasSmaller(XBitSet set) {
 		assert !isEmpty() && !set.isEmpty();
@@ -181,22 +443,26 @@ implements Comparable<XBitSet>{
 	/**
 	 * Compare the target {@code XBitSet} with the argument
 	 * {@code XBitSet}, where the bit vectors are viewed as
-	 * binary representation of an integer, the bit {@code i} 
+	 * binary representation of an integer, the bit {@code i}
 	 * set meaning that the number contains {@code 2^i}.
 	 * @return negative value if the target is smaller, positive if it is
-	 * larger, and zero if it equals the argument  
+	 * larger, and zero if it equals the argument
 	 */
 	public int compareTo(XBitSet set) {
-		int l1 = this.length();
-		int l2 = set.length();
-		if (l1 != l2) {
-			return l1 - l2;
-		}
-		for (int i = l1 - 1; i >= 0; i--) {
-			if (this.get(i) && !set.get(i)) return 1;
-			else if (!this.get(i) && set.get(i)) return -1;
+		return descendingComparator.compare(this, set);
+	}
+
+	/**
+	 * Returns the words of this target {@code XBitSet}, without
+	 * the trailing zero words
+	 * @return the array of words
+	 */
+	public long[] toLongArray() {
+		int l = words.length;
+		while (l > 0 && words[l - 1] == 0) {
+			l--;
 		}
-		return 0;
+		return Arrays.copyOf(words, l);
 	}
 
 	/**
@@ -215,9 +481,9 @@ implements Comparable<XBitSet>{
 
 	/**
 	 * Checks if this target bit set has an element
-	 * that is smaller than every element in 
+	 * that is smaller than every element in
 	 * the argument bit set
-	 * @param vs bit set 
+	 * @param vs bit set
 	 * @return {@code true} if this bit set has an element
 	 * smaller than every element in {@code vs}
 	 */
@@ -227,75 +493,170 @@ implements Comparable<XBitSet>{
 		else return nextSetBit(0) < vs.nextSetBit(0);
 	}
 
+	/**
+	 * Two {@code XBitSet}s are equal if they have the same members,
+	 * regardless of their sizes
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof XBitSet)) {
+			return false;
+		}
+		long[] s = ((XBitSet) obj).words;
+		int l = Math.min(words.length, s.length);
+		for (int w = 0; w < l; w++) {
+			if (words[w] != s[w]) {
+				return false;
+			}
+		}
+		for (int w = l; w < words.length; w++) {
+			if (words[w] != 0) {
+				return false;
+			}
+		}
+		for (int w = l; w < s.length; w++) {
+			if (s[w] != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The hash code depends only on the members. It is folded from
+	 * {@link #fingerprint()}, since the hash code of
+	 * {@code java.util.BitSet} collides for sets that differ in
+	 * members 32 apart, which is common among vertex sets.
+	 */
+	@Override
+	public int hashCode() {
+		long h = fingerprint();
+		return (int) (h ^ (h >>> 32));
+	}
+
+	/**
+	 * Returns a 64-bit hash of the members, mixed so that every bit
+	 * depends on every member. It is independent of the size of the
+	 * vector, as {@code equals} is.
+	 */
+	public long fingerprint() {
+		int l = words.length;
+		while (l > 0 && words[l - 1] == 0) {
+			l--;
+		}
+		long h = l;
+		for (int w = 0; w < l; w++) {
+			h = (h ^ words[w]) * 0x9E3779B97F4A7C15L;
+			h ^= h >>> 32;
+		}
+		// the finalizer of MurmurHash3
+		h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+		h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return h ^ (h >>> 33);
+	}
+
+	@Override
+	public XBitSet clone() {
+		return new XBitSet(words.clone());
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("{");
+		for (int i = nextSetBit(0); i >= 0; i = nextSetBit(i + 1)) {
+			if (sb.length() > 1) {
+				sb.append(", ");
+			}
+			sb.append(i);
+		}
+		return sb.append("}").toString();
+	}
+
 	/**
 	 * holds the reference to an instance of the {@code DescendingComparator}
-	 * for {@code BitSet}
+	 * for {@code XBitSet}
 	 */
-	public static final Comparator<BitSet> descendingComparator =
+	public static final Comparator<XBitSet> descendingComparator =
 			new DescendingComparator();
 
 	/**
 	 * holds the reference to an instance of the {@code AscendingComparator}
-	 * for {@code BitSet}
+	 * for {@code XBitSet}
 	 */
-	public static final Comparator<BitSet> ascendingComparator =
+	public static final Comparator<XBitSet> ascendingComparator =
 			new AscendingComparator();
 
 	/**
 	 * holds the reference to an instance of the {@code CardinalityComparator}
-	 * for {@code BitSet}
+	 * for {@code XBitSet}
 	 */
-	public static final Comparator<BitSet> cardinalityComparator =
+	public static final Comparator<XBitSet> cardinalityComparator =
 			new CardinalityComparator();
 
 	/**
-	 * A comparator for {@code BitSet}. The {@code compare}
-	 * method compares the two vectors in the lexicographic order 
-	 * where the highest bit is the most significant. 
+	 * A comparator for {@code XBitSet}. The {@code compare}
+	 * method compares the two vectors in the lexicographic order
+	 * where the highest bit is the most significant.
 	 */
-	public static class DescendingComparator implements Comparator<BitSet> {
+	public static class DescendingComparator implements Comparator<XBitSet> {
 		@Override
-		public int compare(BitSet s1, BitSet s2) {
+		public int compare(XBitSet s1, XBitSet s2) {
 			int l1 = s1.length();
 			int l2 = s2.length();
 			if (l1 != l2) {
 				return l1 - l2;
 			}
-			for (int i = l1 - 1; i >= 0; i--) {
-				if (s1.get(i) && !s2.get(i)) return 1;
-				else if (!s1.get(i) && s2.get(i)) return -1;
+			for (int w = ((l1 + 63) >>> 6) - 1; w >= 0; w--) {
+				long x = s1.words[w];
+				long y = s2.words[w];
+				if (x != y) {
+					long high = Long.highestOneBit(x ^ y);
+					return (x & high) != 0 ? 1 : -1;
+				}
 			}
 			return 0;
 		}
 	}
 
 	/**
-	 * A comparator for {@code BitSet}. The {@code compare} method compares
+	 * A comparator for {@code XBitSet}. The {@code compare} method compares
 	 * the two vectors in the lexicographic order where the
-	 * lowest bit is the most significant. 
+	 * lowest bit is the most significant.
 	 */
-	public static class AscendingComparator implements Comparator<BitSet> {
+	public static class AscendingComparator implements Comparator<XBitSet> {
 		@Override
-		public int compare(BitSet s1, BitSet s2) {
+		public int compare(XBitSet s1, XBitSet s2) {
 			int l1 = s1.length();
 			int l2 = s2.length();
+			int l = (Math.min(l1, l2) + 63) >>> 6;
 
-			for (int i = 0; i < Math.min(l1,  l2); i++) {
-				if (s1.get(i) && !s2.get(i)) return 1;
-				else if (!s1.get(i) && s2.get(i)) return -1;
+			for (int w = 0; w < l; w++) {
+				long x = s1.words[w];
+				long y = s2.words[w];
+				if (x != y) {
+					long diff = x ^ y;
+					int i = (w << 6) + Long.numberOfTrailingZeros(diff);
+					if (i >= Math.min(l1, l2)) {
+						break;
+					}
+					return (x & Long.lowestOneBit(diff)) != 0 ? 1 : -1;
+				}
 			}
 			return l1 - l2;
 		}
 	}
 
 	/**
-	 * A comparator for {@code BitSet}. The {@code compare} method compares
+	 * A comparator for {@code XBitSet}. The {@code compare} method compares
 	 * the two sets in terms of the cardinality. In case of
-	 * a tie, the two sets are compared by the {@code AscendingComparator} 
+	 * a tie, the two sets are compared by the {@code AscendingComparator}
 	 */
-	public static class CardinalityComparator implements Comparator<BitSet> {
+	public static class CardinalityComparator implements Comparator<XBitSet> {
 		@Override
-		public int compare(BitSet s1, BitSet s2) {
+		public int compare(XBitSet s1, XBitSet s2) {
 			int c1 = s1.cardinality();
 			int c2 = s2.cardinality();
 			if (c1 != c2) {
@@ -308,7 +669,7 @@ implements Comparable<XBitSet>{
 
 	public XBitSet copy()
 	{
-		return (XBitSet)clone();
+		return clone();
 	}
 
-}
\ No newline at end of file
+}
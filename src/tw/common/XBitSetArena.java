@@ -0,0 +1,191 @@
+package tw.common;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * A map from subsets of {0, ..., n - 1} to non-negative ints that keeps the
+ * words of its keys off the heap. The keys are copied into fixed-stride
+ * slots of direct buffers, allocated a chunk at a time, and are indexed by
+ * an open-addressing table of slot numbers with the 64-bit fingerprints of
+ * their sets, as in {@link XBitSetMap}. The heap holds only primitive
+ * arrays, however many keys there are, so a large map adds no objects for
+ * the garbage collector to trace.
+ * <p>
+ * Entries cannot be removed one by one; {@link #free} drops them all with
+ * their buffers. The methods are synchronized, so that an arena can be
+ * shared by threads.
+ */
+public class XBitSetArena {
+	private static final int INITIAL_CAPACITY = 16;
+	private static final int CHUNK_WORDS = 1 << 17;
+
+	/**
+	 * the number of words of a slot
+	 */
+	private final int stride;
+
+	/**
+	 * the slots, 2^chunkBits to a chunk of about CHUNK_WORDS words
+	 */
+	private final int chunkBits;
+	private LongBuffer[] chunks;
+	private int[] values;
+	private int size;
+
+	/**
+	 * the index: slot plus one, 0 for an empty entry
+	 */
+	private int[] table;
+	private long[] fingerprints;
+
+	/**
+	 * @param n the number of elements of the universe
+	 */
+	public XBitSetArena(int n)
+	{
+		stride = Math.max( 1, (n + 63) >>> 6 );
+		chunkBits = Integer.numberOfTrailingZeros( Integer.highestOneBit( Math.max( 1, CHUNK_WORDS / stride ) ) );
+		chunks = new LongBuffer[ 0 ];
+		values = new int[ INITIAL_CAPACITY ];
+		table = new int[ INITIAL_CAPACITY ];
+		fingerprints = new long[ INITIAL_CAPACITY ];
+	}
+
+	public synchronized int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Returns the number of bytes allocated off the heap.
+	 */
+	public synchronized long offHeapBytes()
+	{
+		return ((long) chunks.length << chunkBits) * stride * 8;
+	}
+
+	/**
+	 * Returns the value of the given set, or -1 if the set is not in the map.
+	 */
+	public synchronized int get(XBitSet set)
+	{
+		int i = indexOf( set, set.fingerprint() );
+		return table[ i ] == 0 ? -1 : values[ table[ i ] - 1 ];
+	}
+
+	/**
+	 * Maps the given set to the given value, copying the set into a slot
+	 * if it is not in the map yet.
+	 * @param value a non-negative value
+	 */
+	public synchronized void put(XBitSet set, int value)
+	{
+		if (value < 0) {
+			throw new IllegalArgumentException( "negative value: " + value );
+		}
+		long fp = set.fingerprint();
+		int i = indexOf( set, fp );
+		if (table[ i ] != 0) {
+			values[ table[ i ] - 1 ] = value;
+			return;
+		}
+		int slot = size;
+		store( slot, set );
+		size++;
+		if (slot == values.length) {
+			values = Arrays.copyOf( values, 2 * slot );
+		}
+		values[ slot ] = value;
+		table[ i ] = slot + 1;
+		fingerprints[ i ] = fp;
+		if (size * 4 > table.length * 3) {
+			rehash();
+		}
+	}
+
+	/**
+	 * Removes all entries and lets the buffers go.
+	 */
+	public synchronized void free()
+	{
+		chunks = new LongBuffer[ 0 ];
+		values = new int[ INITIAL_CAPACITY ];
+		table = new int[ INITIAL_CAPACITY ];
+		fingerprints = new long[ INITIAL_CAPACITY ];
+		size = 0;
+	}
+
+	private int indexOf(XBitSet set, long fp)
+	{
+		int mask = table.length - 1;
+		int i = (int) fp & mask;
+		while (table[ i ] != 0) {
+			if (fingerprints[ i ] == fp && matches( table[ i ] - 1, set )) {
+				return i;
+			}
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	private boolean matches(int slot, XBitSet set)
+	{
+		LongBuffer chunk = chunks[ slot >>> chunkBits ];
+		int base = (slot & ((1 << chunkBits) - 1)) * stride;
+		long[] words = set.words;
+		for (int j = 0; j < stride; j++) {
+			if (chunk.get( base + j ) != (j < words.length ? words[ j ] : 0)) {
+				return false;
+			}
+		}
+		for (int j = stride; j < words.length; j++) {
+			if (words[ j ] != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void store(int slot, XBitSet set)
+	{
+		long[] words = set.words;
+		for (int j = stride; j < words.length; j++) {
+			if (words[ j ] != 0) {
+				throw new IllegalArgumentException( "set exceeds the universe: " + set );
+			}
+		}
+		int c = slot >>> chunkBits;
+		if (c == chunks.length) {
+			chunks = Arrays.copyOf( chunks, c + 1 );
+			chunks[ c ] = ByteBuffer.allocateDirect( (1 << chunkBits) * stride * 8 )
+					.order( ByteOrder.nativeOrder() ).asLongBuffer();
+		}
+		LongBuffer chunk = chunks[ c ];
+		int base = (slot & ((1 << chunkBits) - 1)) * stride;
+		for (int j = 0; j < stride; j++) {
+			chunk.put( base + j, j < words.length ? words[ j ] : 0 );
+		}
+	}
+
+	private void rehash()
+	{
+		int[] oldTable = table;
+		long[] oldFingerprints = fingerprints;
+		table = new int[ 2 * oldTable.length ];
+		fingerprints = new long[ 2 * oldTable.length ];
+		int mask = table.length - 1;
+		for (int j = 0; j < oldTable.length; j++) {
+			if (oldTable[ j ] != 0) {
+				int i = (int) oldFingerprints[ j ] & mask;
+				while (table[ i ] != 0) {
+					i = (i + 1) & mask;
+				}
+				table[ i ] = oldTable[ j ];
+				fingerprints[ i ] = oldFingerprints[ j ];
+			}
+		}
+	}
+}
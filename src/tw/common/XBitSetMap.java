@@ -0,0 +1,199 @@
+package tw.common;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A map with {@link XBitSet} keys, stored in an open-addressing table of
+ * parallel arrays: the keys, their 64-bit fingerprints and the values.
+ * A lookup computes the fingerprint of the key once and compares the
+ * words of a stored key only when the fingerprints are equal, so that
+ * probing past other keys costs one {@code long} comparison each.
+ * Keys must not be modified while they are in the map.
+ * Entries cannot be removed; the map is not thread-safe.
+ */
+public class XBitSetMap< V > extends AbstractMap< XBitSet, V > {
+	private static final int INITIAL_CAPACITY = 16;
+
+	private XBitSet[] keys;
+	private long[] fingerprints;
+	private Object[] values;
+	private int size;
+
+	public XBitSetMap()
+	{
+		keys = new XBitSet[ INITIAL_CAPACITY ];
+		fingerprints = new long[ INITIAL_CAPACITY ];
+		values = new Object[ INITIAL_CAPACITY ];
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Returns the slot of the given key, or the empty slot where it
+	 * would be inserted.
+	 */
+	private int indexOf(XBitSet key, long fp)
+	{
+		int mask = keys.length - 1;
+		int i = (int) fp & mask;
+		while (keys[ i ] != null) {
+			if (fingerprints[ i ] == fp && keys[ i ].equals( key )) {
+				return i;
+			}
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V get(Object key)
+	{
+		if (key instanceof XBitSet == false) {
+			return null;
+		}
+		XBitSet k = (XBitSet) key;
+		return (V) values[ indexOf( k, k.fingerprint() ) ];
+	}
+
+	@Override
+	public boolean containsKey(Object key)
+	{
+		if (key instanceof XBitSet == false) {
+			return false;
+		}
+		XBitSet k = (XBitSet) key;
+		return keys[ indexOf( k, k.fingerprint() ) ] != null;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V put(XBitSet key, V value)
+	{
+		long fp = key.fingerprint();
+		int i = indexOf( key, fp );
+		V old = (V) values[ i ];
+		if (keys[ i ] == null) {
+			insert( i, key, fp, value );
+		} else {
+			values[ i ] = value;
+		}
+		return old;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V putIfAbsent(XBitSet key, V value)
+	{
+		long fp = key.fingerprint();
+		int i = indexOf( key, fp );
+		if (keys[ i ] != null && values[ i ] != null) {
+			return (V) values[ i ];
+		}
+		if (keys[ i ] == null) {
+			insert( i, key, fp, value );
+		} else {
+			values[ i ] = value;
+		}
+		return null;
+	}
+
+	private void insert(int i, XBitSet key, long fp, Object value)
+	{
+		keys[ i ] = key;
+		fingerprints[ i ] = fp;
+		values[ i ] = value;
+		// a probe costs a comparison of fingerprints, so the table can be
+		// fuller than a table of references
+		if (++size * 4 > keys.length * 3) {
+			rehash();
+		}
+	}
+
+	@Override
+	public void clear()
+	{
+		Arrays.fill( keys, null );
+		Arrays.fill( values, null );
+		size = 0;
+	}
+
+	private void rehash()
+	{
+		XBitSet[] oldKeys = keys;
+		long[] oldFingerprints = fingerprints;
+		Object[] oldValues = values;
+		int capacity = oldKeys.length * 2;
+		keys = new XBitSet[ capacity ];
+		fingerprints = new long[ capacity ];
+		values = new Object[ capacity ];
+		int mask = capacity - 1;
+		for (int j = 0; j < oldKeys.length; j++) {
+			if (oldKeys[ j ] != null) {
+				int i = (int) oldFingerprints[ j ] & mask;
+				while (keys[ i ] != null) {
+					i = (i + 1) & mask;
+				}
+				keys[ i ] = oldKeys[ j ];
+				fingerprints[ i ] = oldFingerprints[ j ];
+				values[ i ] = oldValues[ j ];
+			}
+		}
+	}
+
+	@Override
+	public Set< Map.Entry< XBitSet, V > > entrySet()
+	{
+		return new AbstractSet< Map.Entry< XBitSet, V > >() {
+			@Override
+			public int size()
+			{
+				return size;
+			}
+
+			@Override
+			public Iterator< Map.Entry< XBitSet, V > > iterator()
+			{
+				return new Iterator< Map.Entry< XBitSet, V > >() {
+					private int next = advance( 0 );
+
+					private int advance(int i)
+					{
+						while (i < keys.length && keys[ i ] == null) {
+							i++;
+						}
+						return i;
+					}
+
+					@Override
+					public boolean hasNext()
+					{
+						return next < keys.length;
+					}
+
+					@Override
+					@SuppressWarnings("unchecked")
+					public Map.Entry< XBitSet, V > next()
+					{
+						if (next >= keys.length) {
+							throw new NoSuchElementException();
+						}
+						int i = next;
+						next = advance( i + 1 );
+						return new AbstractMap.SimpleImmutableEntry<>( keys[ i ], (V) values[ i ] );
+					}
+				};
+			}
+		};
+	}
+}
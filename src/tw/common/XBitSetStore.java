@@ -0,0 +1,159 @@
+package tw.common;
+
+import java.util.Arrays;
+
+/**
+ * A store that keeps one copy of each distinct {@link XBitSet} given to it
+ * and numbers the distinct sets with int handles. Two sets in the store
+ * are equal if and only if their handles are, so that maps keyed by sets
+ * of the store can be keyed by their handles instead, as in
+ * {@link HandleTable}. The first instance given for a set becomes its
+ * canonical instance, and must not be modified afterwards.
+ * <p>
+ * The store is split into {@code STRIPES} stripes by the high bits of the
+ * 64-bit fingerprints of the sets, each with a lock of its own, so that
+ * threads interning different sets seldom wait for each other. A stripe
+ * is an open-addressing table of its handles with their fingerprints, as
+ * in {@link XBitSetMap}, and numbers its sets 0, 1, 2, ...; the handle of
+ * a set is its number in the stripe followed by the {@code STRIPE_BITS}
+ * bits of the stripe, so that the handles stay small and dense.
+ */
+public class XBitSetStore {
+	private static final int STRIPE_BITS = 6;
+	private static final int STRIPES = 1 << STRIPE_BITS;
+	private static final int INITIAL_CAPACITY = 16;
+
+	private final Stripe[] stripes;
+
+	public XBitSetStore()
+	{
+		stripes = new Stripe[ STRIPES ];
+		for (int i = 0; i < STRIPES; i++) {
+			stripes[ i ] = new Stripe();
+		}
+	}
+
+	public int size()
+	{
+		int size = 0;
+		for (Stripe stripe: stripes) {
+			synchronized (stripe) {
+				size += stripe.size;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the handle of the given set, adding the set to the store
+	 * if no equal set is there.
+	 */
+	public int intern(XBitSet set)
+	{
+		long fp = set.fingerprint();
+		int s = stripeOf( fp );
+		return stripes[ s ].intern( set, fp ) << STRIPE_BITS | s;
+	}
+
+	/**
+	 * Returns the handle of the given set, or -1 if no equal set is
+	 * in the store.
+	 */
+	public int find(XBitSet set)
+	{
+		long fp = set.fingerprint();
+		int s = stripeOf( fp );
+		int k = stripes[ s ].find( set, fp );
+		return k < 0 ? -1 : k << STRIPE_BITS | s;
+	}
+
+	/**
+	 * Returns the canonical instance of the set with the given handle.
+	 * It needs no lock: the handle has been obtained from {@code intern}
+	 * after the instance was stored, and the array it is read from is
+	 * replaced only by a copy holding it.
+	 */
+	public XBitSet get(int handle)
+	{
+		return stripes[ handle & (STRIPES - 1) ].sets[ handle >>> STRIPE_BITS ];
+	}
+
+	private static int stripeOf(long fp)
+	{
+		// the low bits index the table of the stripe
+		return (int) (fp >>> (64 - STRIPE_BITS));
+	}
+
+	private static class Stripe {
+		/**
+		 * the canonical instances, by number in the stripe
+		 */
+		volatile XBitSet[] sets = new XBitSet[ INITIAL_CAPACITY ];
+		int size;
+
+		/**
+		 * the index: number plus one, 0 for an empty slot
+		 */
+		int[] table = new int[ INITIAL_CAPACITY ];
+		long[] fingerprints = new long[ INITIAL_CAPACITY ];
+
+		private int indexOf(XBitSet set, long fp)
+		{
+			XBitSet[] sets = this.sets;
+			int mask = table.length - 1;
+			int i = (int) fp & mask;
+			while (table[ i ] != 0) {
+				if (fingerprints[ i ] == fp && sets[ table[ i ] - 1 ].equals( set )) {
+					return i;
+				}
+				i = (i + 1) & mask;
+			}
+			return i;
+		}
+
+		synchronized int find(XBitSet set, long fp)
+		{
+			return table[ indexOf( set, fp ) ] - 1;
+		}
+
+		synchronized int intern(XBitSet set, long fp)
+		{
+			int i = indexOf( set, fp );
+			if (table[ i ] != 0) {
+				return table[ i ] - 1;
+			}
+			XBitSet[] sets = this.sets;
+			if (size == sets.length) {
+				sets = Arrays.copyOf( sets, 2 * size );
+			}
+			int k = size++;
+			sets[ k ] = set;
+			this.sets = sets;
+			table[ i ] = k + 1;
+			fingerprints[ i ] = fp;
+			if (size * 4 > table.length * 3) {
+				rehash();
+			}
+			return k;
+		}
+
+		private void rehash()
+		{
+			int[] oldTable = table;
+			long[] oldFingerprints = fingerprints;
+			table = new int[ 2 * oldTable.length ];
+			fingerprints = new long[ 2 * oldTable.length ];
+			int mask = table.length - 1;
+			for (int j = 0; j < oldTable.length; j++) {
+				if (oldTable[ j ] != 0) {
+					int i = (int) oldFingerprints[ j ] & mask;
+					while (table[ i ] != 0) {
+						i = (i + 1) & mask;
+					}
+					table[ i ] = oldTable[ j ];
+					fingerprints[ i ] = oldFingerprints[ j ];
+				}
+			}
+		}
+	}
+}